@@ -0,0 +1,16 @@
+package com.dvbug.dagengine.executor;
+
+/**
+ * {@link DagGraphExecutor} 超过并发执行上限时的准入策略
+ */
+public enum AdmissionPolicy {
+    /**
+     * 立即拒绝, 执行以 {@link java.util.concurrent.RejectedExecutionException} 失败
+     */
+    REJECT,
+    /**
+     * 同步执行在超时时间内等待执行名额, 等不到时拒绝
+     * 异步执行不会阻塞调用线程, 仍然立即拒绝
+     */
+    WAIT
+}
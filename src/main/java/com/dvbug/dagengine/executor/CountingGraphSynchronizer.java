@@ -0,0 +1,273 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.javared.executor.RedSynchronizer;
+import com.dvbug.javared.future.OpenRedFutureOf;
+import com.dvbug.javared.future.RedFuture;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * DAG图依赖计数调度同步器, 线程安全的
+ * 每次请求每个节点最多执行一次, 结果取第一个成功的终止节点, 执行历史为该终止节点沿选中上游回溯到根节点的路径
+ * 每次请求只有一组按节点编号索引的原子数组和一个结果 future, 不为节点和边创建 future 与回调,
+ * 节点结束后同时就绪的下游中, 一个可以继续执行({@link NodeDispatcher#canContinue})且优先级最高的节点直接在当前线程继续执行, 其余提交到线程池
+ * <p>
+ * 不开启短路时, 节点在全部上游结束(剩余依赖数降为0)时以第一个(按入边顺序)成功的上游输出作为入参执行, 没有成功的上游时跳过
+ * 开启短路时, 节点以最先成功的上游输出作为入参立即执行, 第一个成功的终止节点立即完成执行并取消其余仍未结束的节点
+ * 汇聚节点({@link com.dvbug.dagengine.graph.MergeDagNode})按其 quorum 就绪, 不受短路影响
+ * 不满足边条件的上游输出视为没有成功, 不会触发下游执行
+ * 输入失败时与逐路径模式一致, 不执行任何节点, 失败结果沿单出边透传到终止节点, 遇到分叉则没有结果
+ */
+final class CountingGraphSynchronizer extends RedSynchronizer<ExecuteContext, ExecuteContext> {
+    private static final int UNDECIDED = -2;
+    private static final int SKIPPED = -3;
+
+    private final ExecutionPlan plan;
+    private final NodeInvoker invoker;
+    private final boolean shortCircuit;
+
+    public CountingGraphSynchronizer(ExecutionPlan plan, NodeInvoker invoker, boolean shortCircuit) {
+        this.plan = plan;
+        this.invoker = invoker;
+        this.shortCircuit = shortCircuit;
+    }
+
+    @Override
+    protected Result<ExecuteContext> handle(ExecuteContext input) {
+        return produceFutureOf(ExecuteContext.class).byExecuting(() -> new Execution(input).start());
+    }
+
+    /**
+     * 单次请求的执行状态
+     */
+    private final class Execution {
+        private final ExecuteContext input;
+        private final ExecuteScope scope;
+        private final OpenRedFutureOf<ExecuteContext> result = RedFuture.futureOf();
+        // 节点输出, 未执行或被跳过的节点为 null
+        private final AtomicReferenceArray<GraphData> outputs;
+        // 沿边传递的上游输出, 边关闭时为 null, 图中没有带条件的边时为 null
+        private final AtomicReferenceArray<GraphData> edges;
+        // 节点选中的上游编号, 根节点为 -1
+        private final AtomicIntegerArray chosen;
+        // 节点尚未结束的上游数量
+        private final AtomicIntegerArray pending;
+        // 汇聚节点已成功的上游数量, 图中没有汇聚节点时为 null
+        private final AtomicIntegerArray succeeded;
+        // 尚未结束的终止节点数量
+        private final AtomicInteger pendingTerminals;
+
+        Execution(ExecuteContext input) {
+            int size = plan.size();
+            this.input = input;
+            this.scope = null == input.getScope() ? new ExecuteScope() : input.getScope();
+            this.outputs = new AtomicReferenceArray<>(size);
+            this.edges = plan.hasEdgePredicates() ? new AtomicReferenceArray<>(plan.edgeCount()) : null;
+            this.chosen = new AtomicIntegerArray(size);
+            this.pending = new AtomicIntegerArray(plan.predecessorCounts());
+            this.succeeded = plan.hasMerge() ? new AtomicIntegerArray(size) : null;
+            this.pendingTerminals = new AtomicInteger(plan.terminalCount());
+            for (int i = 0; i < size; i++) {
+                chosen.set(i, UNDECIDED);
+            }
+        }
+
+        OpenRedFutureOf<ExecuteContext> start() {
+            int root = plan.root();
+            if (!input.getData().isSucceed()) {
+                result.tryResolve(plan.isSingleChain(root) ? abandon() : null);
+            } else {
+                chosen.set(root, -1);
+                submit(root, input.getData());
+            }
+            return result;
+        }
+
+        private void submit(int node, GraphData nodeInput) {
+            invoker.invoke(node, nodeInput, scope, output -> drive(node, output));
+        }
+
+        // 处理节点输出, 并在当前线程上循环执行可以继续执行的下游, 避免长链路递归
+        private void drive(int node, GraphData output) {
+            int next = done(node, output);
+            while (next >= 0) {
+                output = invoker.call(next, outputs.get(chosen.get(next)), scope);
+                next = done(next, output);
+            }
+        }
+
+        /**
+         * 记录节点输出并对每条出边的条件求值一次, 就绪的下游中最后一个可以继续执行的节点留给当前线程, 其余提交执行
+         *
+         * @return 留给当前线程继续执行的节点编号, 没有返回 -1
+         */
+        private int done(int node, GraphData output) {
+            outputs.set(node, output);
+            if (plan.isTerminal(node)) {
+                onTerminalDone(node, output);
+                return -1;
+            }
+
+            int next = -1;
+            int[] children = plan.successors(node);
+            for (int j = 0; j < children.length; j++) {
+                int child = children[j];
+                GraphData edgeOutput = plan.isOpenToSuccessor(node, j, output) ? output : null;
+                if (null != edges) {
+                    edges.set(plan.successorEdge(node, j), edgeOutput);
+                }
+                if (plan.isMerge(child)) {
+                    if (mergeReady(child, node, edgeOutput)) {
+                        submit(child, plan.mergeInput(child, k -> edgeOutput(child, k)));
+                    }
+                    continue;
+                }
+                int parent = plan.isJoin(child) ? joinReady(child, node, edgeOutput) : parentReady(child, node, edgeOutput);
+                if (parent < 0) {
+                    continue;
+                }
+                if (invoker.canContinue(node, child) && (next < 0 || invoker.priority(child) >= invoker.priority(next))) {
+                    if (next >= 0) {
+                        submit(next, outputs.get(chosen.get(next)));
+                    }
+                    next = child;
+                } else {
+                    submit(child, outputs.get(parent));
+                }
+            }
+            return next;
+        }
+
+        /**
+         * 单入边节点的上游结束, 不需要依赖计数, 直接决定执行或跳过
+         *
+         * @return 选中的上游编号, 跳过返回 -1
+         */
+        private int parentReady(int node, int parent, GraphData output) {
+            if (null == output) {
+                skipIfUndecided(node);
+                return -1;
+            }
+            chosen.set(node, parent);
+            return parent;
+        }
+
+        /**
+         * 多入边节点的上游结束, 短路时最先成功的上游触发执行, 否则全部上游结束时按入边顺序选择
+         *
+         * @return 本次调用触发执行时返回选中的上游编号, 否则返回 -1
+         */
+        private int joinReady(int node, int parent, GraphData output) {
+            if (shortCircuit && null != output && chosen.compareAndSet(node, UNDECIDED, parent)) {
+                return parent;
+            }
+            if (pending.decrementAndGet(node) > 0) {
+                return -1;
+            }
+            int first = shortCircuit ? -1 : chooseParent(node);
+            if (first < 0) {
+                skipIfUndecided(node);
+                return -1;
+            }
+            chosen.set(node, first);
+            return first;
+        }
+
+        /**
+         * 汇聚节点的上游结束, 成功上游达到 quorum 个或全部上游结束时就绪
+         *
+         * @return 汇聚节点是否由本次调用触发执行
+         */
+        private boolean mergeReady(int node, int parent, GraphData output) {
+            int quorum = plan.quorum(node);
+            boolean ready = quorum > 0 && null != output && output.isSucceed()
+                    && succeeded.incrementAndGet(node) == quorum && chosen.compareAndSet(node, UNDECIDED, parent);
+            if (pending.decrementAndGet(node) > 0 || ready) {
+                return ready;
+            }
+            int first = quorum == 0 ? chooseParent(node) : -1;
+            if (first >= 0 && chosen.compareAndSet(node, UNDECIDED, first)) {
+                return true;
+            }
+            skipIfUndecided(node);
+            return false;
+        }
+
+        private void skipIfUndecided(int node) {
+            if (chosen.compareAndSet(node, UNDECIDED, SKIPPED)) {
+                drive(node, null);
+            }
+        }
+
+        // 按入边顺序选择第一个成功且满足边条件的上游, 没有返回 -1
+        private int chooseParent(int node) {
+            int[] parents = plan.predecessors(node);
+            for (int k = 0; k < parents.length; k++) {
+                if (null != edgeOutput(node, k)) {
+                    return parents[k];
+                }
+            }
+            return -1;
+        }
+
+        // 沿节点第 k 条入边传递的上游输出, 边关闭或上游没有成功时为 null
+        private GraphData edgeOutput(int node, int k) {
+            if (null != edges) {
+                return edges.get(plan.predecessorEdge(node, k));
+            }
+            GraphData output = outputs.get(plan.predecessors(node)[k]);
+            return null != output && output.isSucceed() ? output : null;
+        }
+
+        // 短路时第一个成功的终止节点直接完成执行, 否则等全部终止节点结束
+        private void onTerminalDone(int terminal, GraphData output) {
+            if (shortCircuit && null != output && output.isSucceed() && !result.isDone()) {
+                result.tryResolve(collect(terminal));
+                scope.cancel();
+            }
+            if (pendingTerminals.decrementAndGet() == 0 && !result.isDone()) {
+                result.tryResolve(collect());
+            }
+        }
+
+        // 失败的输入作为执行结果
+        private ExecuteContext abandon() {
+            return new ExecuteContext().clone(input).pushHistory(input.getData(), input.getExecuteNode());
+        }
+
+        // 取第一个成功的终止节点
+        private ExecuteContext collect() {
+            for (int node = 0; node < plan.size(); node++) {
+                GraphData output = outputs.get(node);
+                if (plan.isTerminal(node) && null != output && output.isSucceed()) {
+                    return collect(node);
+                }
+            }
+            return null;
+        }
+
+        // 回溯终止节点的选中路径作为执行历史
+        private ExecuteContext collect(int terminal) {
+            ExecuteContext context = new ExecuteContext(outputs.get(terminal), plan.node(terminal).getName());
+            if (!input.isRecordHistory()) {
+                return context.setRecordHistory(false);
+            }
+
+            int depth = 0;
+            for (int n = terminal; n >= 0; n = chosen.get(n)) {
+                depth++;
+            }
+            int[] path = new int[depth];
+            for (int n = terminal; n >= 0; n = chosen.get(n)) {
+                path[--depth] = n;
+            }
+            for (int n : path) {
+                context.pushHistory(outputs.get(n), plan.node(n).getName());
+            }
+            return context;
+        }
+    }
+}
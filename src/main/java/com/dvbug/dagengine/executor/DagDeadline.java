@@ -0,0 +1,41 @@
+package com.dvbug.dagengine.executor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点内查询当前执行的截止时间
+ * 截止时间由 {@link DagGraphExecutor#execute} 的超时时间决定, 超过后未开始的节点不再执行,
+ * 正在执行节点的线程被中断, 节点中的耗时操作(如远程调用)应以剩余时间作为自身的超时时间
+ */
+public final class DagDeadline {
+    private DagDeadline() {
+    }
+
+    /**
+     * @return 当前线程是否在带有截止时间的节点执行中
+     */
+    public static boolean isPresent() {
+        ExecuteScope scope = ExecuteScope.current();
+        return null != scope && scope.hasDeadline();
+    }
+
+    /**
+     * @param unit 时间单位
+     * @return 距离截止时间的剩余时间, 已超过时不大于0, 没有截止时间返回 {@link Long#MAX_VALUE}
+     */
+    public static long remaining(TimeUnit unit) {
+        ExecuteScope scope = ExecuteScope.current();
+        if (null == scope || !scope.hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return unit.convert(scope.remainingNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return 当前执行是否已超过截止时间或已被取消, 长时间运行的节点可以据此提前结束
+     */
+    public static boolean isExpired() {
+        ExecuteScope scope = ExecuteScope.current();
+        return null != scope && scope.isCancelled();
+    }
+}
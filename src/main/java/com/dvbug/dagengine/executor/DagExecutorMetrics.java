@@ -0,0 +1,84 @@
+package com.dvbug.dagengine.executor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link DagGraphExecutor} 准入控制、合并执行和结果缓存计数, 线程安全的实时数据
+ */
+public final class DagExecutorMetrics {
+    final AtomicInteger runningExecutions = new AtomicInteger();
+    final LongAdder rejectedExecutions = new LongAdder();
+    final AtomicInteger queuedTasks = new AtomicInteger();
+    final LongAdder rejectedTasks = new LongAdder();
+    final LongAdder callerRunsTasks = new LongAdder();
+    final LongAdder coalescedExecutions = new LongAdder();
+    final LongAdder resultCacheHits = new LongAdder();
+    final LongAdder resultCacheMisses = new LongAdder();
+
+    DagExecutorMetrics() {
+    }
+
+    /**
+     * @return 正在进行的执行数量
+     */
+    public int getRunningExecutions() {
+        return runningExecutions.get();
+    }
+
+    /**
+     * @return 因超过并发执行上限被拒绝的执行总数
+     */
+    public long getRejectedExecutions() {
+        return rejectedExecutions.sum();
+    }
+
+    /**
+     * @return 已提交到线程池尚未开始的节点任务数量, 只在设置了排队上限时统计
+     */
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /**
+     * @return 因超过排队上限或线程池拒绝而失败的节点任务总数
+     */
+    public long getRejectedTasks() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * @return 因超过排队上限在提交线程上直接执行的节点任务总数
+     */
+    public long getCallerRunsTasks() {
+        return callerRunsTasks.sum();
+    }
+
+    /**
+     * @return 加入相同键正在进行的执行而没有独立执行的总数
+     */
+    public long getCoalescedExecutions() {
+        return coalescedExecutions.sum();
+    }
+
+    /**
+     * @return 整图结果缓存命中总数
+     */
+    public long getResultCacheHits() {
+        return resultCacheHits.sum();
+    }
+
+    /**
+     * @return 整图结果缓存未命中总数
+     */
+    public long getResultCacheMisses() {
+        return resultCacheMisses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DagExecutorMetrics(runningExecutions=%d, rejectedExecutions=%d, queuedTasks=%d, rejectedTasks=%d, callerRunsTasks=%d, coalescedExecutions=%d, resultCacheHits=%d, resultCacheMisses=%d)",
+                getRunningExecutions(), getRejectedExecutions(), getQueuedTasks(), getRejectedTasks(), getCallerRunsTasks(),
+                getCoalescedExecutions(), getResultCacheHits(), getResultCacheMisses());
+    }
+}
@@ -0,0 +1,129 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.GraphData;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link DagGraphExecutor} 执行选项, 不可变对象
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public final class DagExecutorOptions {
+    public static final DagExecutorOptions DEFAULT = DagExecutorOptions.builder().build();
+
+    /**
+     * 执行模式
+     */
+    @NonNull
+    @Builder.Default
+    private final ExecuteMode mode = ExecuteMode.PATH;
+
+    /**
+     * 是否内联执行
+     * 开启后非阻塞节点直接在完成其上游的线程上执行并完成结果, 不再经过线程池调度,
+     * 只有声明为阻塞({@link com.dvbug.dagengine.graph.DagNodeOptions#isBlocking()})的节点提交到线程池
+     */
+    private final boolean inline;
+
+    /**
+     * 自适应内联阈值(微秒), 0表示不开启
+     * 开启后统计每个节点的平均耗时, 低于阈值的非阻塞节点在完成其上游的线程上内联执行, 其余节点提交到线程池,
+     * 没有耗时样本的节点先提交到线程池执行; 节点可以通过 {@link com.dvbug.dagengine.graph.DagNodeOptions#getInline()} 覆盖
+     */
+    private final long adaptiveInlineThreshold;
+
+    /**
+     * 执行历史记录模式, 可以在每次调用时覆盖
+     */
+    @NonNull
+    @Builder.Default
+    private final HistoryMode historyMode = HistoryMode.FULL;
+
+    /**
+     * {@link HistoryMode#SAMPLED} 模式下记录历史的执行比例, 取值 [0, 1]
+     */
+    @Builder.Default
+    private final double historySampleRate = 0.01;
+
+    /**
+     * 是否在第一个成功结果出现时立即完成
+     * 开启时分叉汇聚(共享模式下为终止节点)取最先成功的结果, 并取消其余仍在执行的子路径:
+     * 未开始的节点不再执行, 正在执行节点的线程被中断
+     * 关闭时等待全部子路径结束, 按优先顺序取第一个成功的结果
+     */
+    @Builder.Default
+    private final boolean shortCircuit = true;
+
+    /**
+     * 节点执行线程池, 由调用方管理生命周期, 可以在多个执行器之间共享
+     * 为空时使用 {@link #executorProvider}, 都为空时使用 {@link DagExecutors#defaultExecutor()}
+     */
+    private final Executor executor;
+
+    /**
+     * 节点执行线程池提供者, 每个 {@link DagGraphExecutor} 构造时调用一次获得独占的线程池,
+     * 如果是 {@link java.util.concurrent.ExecutorService} 会在 {@link DagGraphExecutor#close()} 时关闭
+     */
+    private final Supplier<? extends Executor> executorProvider;
+
+    /**
+     * 是否按关键路径优先调度节点
+     * 开启后统计每个节点的平均耗时, 线程池繁忙时优先执行到终止节点估算耗时最长的就绪节点
+     */
+    private final boolean prioritized;
+
+    /**
+     * 最大并发执行数量, 0表示不限制
+     */
+    private final int maxConcurrentExecutions;
+
+    /**
+     * 超过 {@link #maxConcurrentExecutions} 时的准入策略
+     */
+    @NonNull
+    @Builder.Default
+    private final AdmissionPolicy admissionPolicy = AdmissionPolicy.REJECT;
+
+    /**
+     * 最大排队节点任务数量, 即已提交到线程池尚未开始的节点任务, 0表示不限制
+     */
+    private final int maxQueuedTasks;
+
+    /**
+     * 超过 {@link #maxQueuedTasks} 时的处理策略
+     */
+    @NonNull
+    @Builder.Default
+    private final OverloadPolicy overloadPolicy = OverloadPolicy.REJECT;
+
+    /**
+     * 合并执行键, 从输入提取, 为空表示不合并, 返回 null 表示该输入不合并
+     * 相同键的并发执行共享同一次执行的结果, 合并的执行不因某个调用方超时而取消, 截止时间由发起执行的调用方决定
+     */
+    private final Function<? super GraphData, ?> coalesceKey;
+
+    /**
+     * 整图结果缓存键, 从输入提取, 为空表示不缓存, 返回 null 表示该输入不使用缓存
+     * 相同键的输入直接返回缓存的执行结果, 不再调度执行, 只缓存成功的结果
+     */
+    private final Function<? super GraphData, ?> resultCacheKey;
+
+    /**
+     * 整图结果缓存的最大条目数
+     */
+    @Builder.Default
+    private final long resultCacheSize = 10_000;
+
+    /**
+     * 整图结果缓存写入后的存活时间(毫秒), 不大于0表示不过期
+     */
+    private final long resultCacheTtl;
+}
@@ -0,0 +1,118 @@
+package com.dvbug.dagengine.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * {@link DagGraphExecutor} 可用的线程池
+ */
+public final class DagExecutors {
+    private DagExecutors() {
+    }
+
+    /**
+     * 默认线程池, 按CPU核数创建的 {@link ForkJoinPool}, 所有未指定线程池的执行器共享
+     * 工作线程为守护线程, 随JVM退出
+     *
+     * @return 默认线程池
+     */
+    public static Executor defaultExecutor() {
+        return DefaultPoolHolder.POOL;
+    }
+
+    /**
+     * 创建按CPU核数设置并行度的 {@link ForkJoinPool}
+     *
+     * @param name 工作线程名前缀
+     * @return 新的线程池, 由调用方负责关闭
+     */
+    public static ForkJoinPool newForkJoinPool(String name) {
+        return newForkJoinPool(name, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 创建指定并行度的 {@link ForkJoinPool}
+     *
+     * @param name        工作线程名前缀
+     * @param parallelism 并行度
+     * @return 新的线程池, 由调用方负责关闭
+     */
+    public static ForkJoinPool newForkJoinPool(String name, int parallelism) {
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(name + "-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    /**
+     * 当前运行环境是否支持虚拟线程(Java 21+)
+     *
+     * @return 是否支持
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadHolder.SUPPORTED;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池, 适用于节点内存在大量阻塞I/O的场景
+     * 配合 {@link DagExecutorOptions.DagExecutorOptionsBuilder#executorProvider} 使用时由执行器负责关闭
+     * 在运行时查找 {@code Executors.newVirtualThreadPerTaskExecutor()}, 编译目标仍为 Java 8
+     *
+     * @return 新的虚拟线程池, 由调用方负责关闭
+     * @throws UnsupportedOperationException 运行环境不支持虚拟线程
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (!VirtualThreadHolder.SUPPORTED) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or higher");
+        }
+        return VirtualThreadHolder.newExecutor();
+    }
+
+    private static class VirtualThreadHolder {
+        private static final MethodHandle FACTORY = lookup();
+        private static final boolean SUPPORTED = probe();
+
+        private static MethodHandle lookup() {
+            try {
+                return MethodHandles.publicLookup().findStatic(Executors.class, "newVirtualThreadPerTaskExecutor",
+                        MethodType.methodType(ExecutorService.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            }
+        }
+
+        // Java 19/20 中该方法存在但需要开启预览特性
+        private static boolean probe() {
+            if (null == FACTORY) {
+                return false;
+            }
+            try {
+                newExecutor().shutdown();
+                return true;
+            } catch (UnsupportedOperationException e) {
+                return false;
+            }
+        }
+
+        private static ExecutorService newExecutor() {
+            try {
+                return (ExecutorService) FACTORY.invoke();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new UnsupportedOperationException(t);
+            }
+        }
+    }
+
+    private static class DefaultPoolHolder {
+        private static final ForkJoinPool POOL = newForkJoinPool("dag-engine");
+    }
+}
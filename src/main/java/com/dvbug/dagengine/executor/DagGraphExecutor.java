@@ -3,43 +3,390 @@ package com.dvbug.dagengine.executor;
 
 import com.dvbug.dagengine.graph.DagGraph;
 import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.javared.executor.RedSynchronizer;
+import com.dvbug.javared.future.OpenRedFutureOf;
+import com.dvbug.javared.future.RedFuture;
 import com.dvbug.javared.future.RedFutureOf;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Getter;
+import lombok.NonNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * DAG图调度同步器包装类, 线程安全的
+ * 构造时将图编译为 {@link ExecutionPlan}, 之后对图的修改需要重新创建执行器
+ * 通过 {@link DagExecutorOptions#getExecutorProvider()} 获得的独占线程池在 {@link #close()} 时关闭
  */
-public final class DagGraphExecutor {
-    private final StrategyGraphSynchronizer synchronizer;
+public final class DagGraphExecutor implements AutoCloseable {
+    private final ExecutionPlan plan;
+    @Getter
+    private final DagExecutorOptions options;
+    private final RedSynchronizer<ExecuteContext, ExecuteContext> synchronizer;
+    // 执行器独占的线程池, 关闭时一并关闭
+    private final ExecutorService ownedExecutor;
+    // 并发执行名额, 不限制时为 null
+    private final Semaphore permits;
+    // 正在进行的合并执行
+    private final ConcurrentMap<Object, Run> flights = new ConcurrentHashMap<>();
+    // 整图结果缓存, 不缓存时为 null
+    private final Cache<Object, ExecuteResult<GraphData>> resultCache;
+    /**
+     * 准入控制和结果缓存计数
+     */
+    @Getter
+    private final DagExecutorMetrics metrics = new DagExecutorMetrics();
 
     public DagGraphExecutor(DagGraph graph) {
-        this.synchronizer = new StrategyGraphSynchronizer(graph);
+        this(graph, DagExecutorOptions.DEFAULT);
     }
 
+    public DagGraphExecutor(DagGraph graph, DagExecutorOptions options) {
+        this.plan = ExecutionPlan.compile(graph);
+        this.options = options;
+
+        Executor executor = options.getExecutor();
+        ExecutorService ownedExecutor = null;
+        if (null == executor && null != options.getExecutorProvider()) {
+            executor = options.getExecutorProvider().get();
+            if (executor instanceof ExecutorService) {
+                ownedExecutor = (ExecutorService) executor;
+            }
+        }
+        if (null == executor) {
+            executor = DagExecutors.defaultExecutor();
+        }
+        this.ownedExecutor = ownedExecutor;
+
+        this.permits = options.getMaxConcurrentExecutions() > 0 ? new Semaphore(options.getMaxConcurrentExecutions()) : null;
+        this.resultCache = null == options.getResultCacheKey() ? null : newResultCache(options);
+
+        NodeStatistics statistics = new NodeStatistics(plan, options.isPrioritized() || options.getAdaptiveInlineThreshold() > 0);
+        NodeDispatcher dispatcher = new NodeDispatcher(plan, options, executor, metrics, statistics);
+        NodeInvoker invoker = new NodeInvoker(plan, dispatcher, statistics);
+        switch (options.getMode()) {
+            case SHARED:
+                this.synchronizer = new SharedGraphSynchronizer(plan, invoker, options.isShortCircuit());
+                break;
+            case COUNTING:
+                this.synchronizer = new CountingGraphSynchronizer(plan, invoker, options.isShortCircuit());
+                break;
+            case PATH:
+            default:
+                this.synchronizer = new StrategyGraphSynchronizer(plan, invoker, options.isShortCircuit());
+        }
+    }
+
+    /**
+     * 同步执行, 超时时间同时作为本次执行的截止时间, 通过 {@link DagDeadline} 对节点可见
+     * 超时或调用线程被中断时取消本次执行, 未开始的节点不再执行, 正在执行节点的线程被中断
+     * 超过并发执行上限时按 {@link AdmissionPolicy} 立即拒绝或在超时时间内等待执行名额
+     *
+     * @param input   输入
+     * @param timeout 超时时间(毫秒)
+     * @return 执行结果
+     * @throws RejectedExecutionException 超过并发执行上限
+     */
     public ExecuteResult<GraphData> execute(GraphData input, long timeout) throws ExecutionException, InterruptedException, TimeoutException {
-        RedFutureOf<ExecuteContext> future = this.synchronizer.execute(new ExecuteContext(input, "input"));
-        ExecuteContext executeContext = future.get(timeout, TimeUnit.MILLISECONDS);
+        return execute(input, timeout, options.getHistoryMode());
+    }
+
+    /**
+     * 同步执行, 本次执行使用指定的历史记录模式
+     * 合并执行或命中结果缓存时, 执行历史与发起执行的调用相同
+     *
+     * @param input       输入
+     * @param timeout     超时时间(毫秒)
+     * @param historyMode 历史记录模式
+     * @return 执行结果
+     * @throws RejectedExecutionException 超过并发执行上限
+     * @see #execute(GraphData, long)
+     */
+    public ExecuteResult<GraphData> execute(GraphData input, long timeout, HistoryMode historyMode) throws ExecutionException, InterruptedException, TimeoutException {
+        Object cacheKey = resultCacheKeyOf(input);
+        ExecuteResult<GraphData> cached = cachedResult(cacheKey);
+        if (null != cached) {
+            return cached;
+        }
+
+        Object flightKey = coalesceKeyOf(input);
+        Run run = joinFlight(flightKey);
+        if (null == run) {
+            long start = System.nanoTime();
+            if (null != permits && !permits.tryAcquire()) {
+                if (options.getAdmissionPolicy() != AdmissionPolicy.WAIT || !permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw rejected();
+                }
+                timeout -= TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            try {
+                run = launch(input, timeout, historyMode, flightKey);
+            } catch (Throwable t) {
+                releasePermit();
+                throw t;
+            }
+        }
+        ExecuteContext executed;
+        try {
+            executed = run.future.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            run.cancel();
+            throw e;
+        }
+        // 截止时间先于 get 超时生效时, 被取消的路径没有结果, 同样视为超时
+        if (null == executed && run.context.getScope().isCancelled()) {
+            throw timeoutError(timeout);
+        }
+        return cacheResult(cacheKey, toResult(executed));
+    }
+
+    /**
+     * 异步执行, 调用线程不会阻塞等待执行结果
+     * 返回结果在完成执行的线程上完成, 耗时的后续处理应使用 {@code *Async} 方法切换线程
+     *
+     * @param input   输入
+     * @param timeout 超时时间(毫秒), 超时后结果以 {@link TimeoutException} 异常完成并取消本次执行
+     * @return 执行结果, 超过并发执行上限时不论 {@link AdmissionPolicy} 都立即以 {@link RejectedExecutionException} 异常完成
+     */
+    public CompletionStage<ExecuteResult<GraphData>> executeAsync(GraphData input, long timeout) {
+        return executeAsync(input, timeout, options.getHistoryMode());
+    }
 
-        GraphData data = null;
-        List<ExecuteResult.History<GraphData>> history = null;
-        if (null != executeContext) {
-            data = executeContext.getData();
-            history = Arrays.stream(executeContext.getHistory()).map(h -> new ExecuteResult.History<>(h.getResult(), h.getExecuteNode())).collect(Collectors.toList());
+    /**
+     * 异步执行, 本次执行使用指定的历史记录模式
+     *
+     * @param input       输入
+     * @param timeout     超时时间(毫秒)
+     * @param historyMode 历史记录模式
+     * @return 执行结果
+     * @see #executeAsync(GraphData, long)
+     */
+    public CompletionStage<ExecuteResult<GraphData>> executeAsync(GraphData input, long timeout, HistoryMode historyMode) {
+        CompletableFuture<ExecuteResult<GraphData>> result = new CompletableFuture<>();
+        Object cacheKey = resultCacheKeyOf(input);
+        ExecuteResult<GraphData> cached = cachedResult(cacheKey);
+        if (null != cached) {
+            result.complete(cached);
+            return result;
+        }
+        Object flightKey = coalesceKeyOf(input);
+        Run joined = joinFlight(flightKey);
+        if (null == joined) {
+            if (null != permits && !permits.tryAcquire()) {
+                result.completeExceptionally(rejected());
+                return result;
+            }
+            try {
+                joined = launch(input, timeout, historyMode, flightKey);
+            } catch (Throwable t) {
+                releasePermit();
+                result.completeExceptionally(t);
+                return result;
+            }
         }
+        Run run = joined;
+        ScheduledFuture<?> timer = DagTimer.schedule(() -> {
+            result.completeExceptionally(timeoutError(timeout));
+            run.cancel();
+        }, timeout, TimeUnit.MILLISECONDS);
+        run.future.addSuccessCallback(executed -> {
+            timer.cancel(false);
+            if (null == executed && run.context.getScope().isCancelled()) {
+                result.completeExceptionally(timeoutError(timeout));
+            } else {
+                result.complete(cacheResult(cacheKey, toResult(executed)));
+            }
+        }).addFailureCallback(t -> {
+            timer.cancel(false);
+            result.completeExceptionally(t);
+        });
+        return result;
+    }
 
+    // 加入相同键正在进行的执行, 没有返回 null
+    private Run joinFlight(Object flightKey) {
+        Run run = null == flightKey ? null : flights.get(flightKey);
+        if (null != run) {
+            metrics.coalescedExecutions.increment();
+        }
+        return run;
+    }
+
+    // 已获得执行名额, 开始一次新的执行; 合并执行时与相同键的执行竞争, 竞争失败则归还名额并加入对方
+    private Run launch(GraphData input, long timeout, HistoryMode historyMode, Object flightKey) {
+        ExecuteContext context = newInput(input, timeout, historyMode);
+        if (null == flightKey) {
+            return new Run(context, start(context), false);
+        }
+        OpenRedFutureOf<ExecuteContext> future = RedFuture.futureOf();
+        Run run = new Run(context, future, true);
+        Run existing = flights.putIfAbsent(flightKey, run);
+        if (null != existing) {
+            releasePermit();
+            metrics.coalescedExecutions.increment();
+            return existing;
+        }
+        future.addFinallyCallback(() -> flights.remove(flightKey, run));
+        future.follow(start(context));
+        return run;
+    }
+
+    private Object coalesceKeyOf(GraphData input) {
+        return null == options.getCoalesceKey() ? null : options.getCoalesceKey().apply(input);
+    }
+
+    // 已获得执行名额, 执行结束时归还; 启动失败时由调用方归还
+    private RedFutureOf<ExecuteContext> start(ExecuteContext context) {
+        metrics.runningExecutions.incrementAndGet();
+        RedFutureOf<ExecuteContext> future;
+        try {
+            future = this.synchronizer.execute(context);
+        } catch (Throwable t) {
+            metrics.runningExecutions.decrementAndGet();
+            throw t;
+        }
+        future.addFinallyCallback(() -> {
+            metrics.runningExecutions.decrementAndGet();
+            releasePermit();
+        });
+        return future;
+    }
+
+    private void releasePermit() {
+        if (null != permits) {
+            permits.release();
+        }
+    }
+
+    /**
+     * 清空整图结果缓存, 节点依赖的外部数据变化后调用
+     * 图结构的修改需要重新创建执行器
+     */
+    public void invalidateResultCache() {
+        if (null != resultCache) {
+            resultCache.invalidateAll();
+        }
+    }
+
+    private static Cache<Object, ExecuteResult<GraphData>> newResultCache(DagExecutorOptions options) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(options.getResultCacheSize());
+        if (options.getResultCacheTtl() > 0) {
+            builder.expireAfterWrite(options.getResultCacheTtl(), TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
+    }
+
+    private Object resultCacheKeyOf(GraphData input) {
+        return null == resultCache ? null : options.getResultCacheKey().apply(input);
+    }
+
+    private ExecuteResult<GraphData> cachedResult(Object cacheKey) {
+        if (null == cacheKey) {
+            return null;
+        }
+        ExecuteResult<GraphData> cached = resultCache.getIfPresent(cacheKey);
+        (null == cached ? metrics.resultCacheMisses : metrics.resultCacheHits).increment();
+        return cached;
+    }
+
+    // 只缓存成功的结果, 缓存的结果在多次请求间共享, 执行历史不可修改
+    private ExecuteResult<GraphData> cacheResult(Object cacheKey, ExecuteResult<GraphData> result) {
+        if (null == cacheKey || !result.getData().isSucceed()) {
+            return result;
+        }
+        ExecuteResult<GraphData> shared = new ExecuteResult<>(result.getData(), Collections.unmodifiableList(result.getHistory()));
+        resultCache.put(cacheKey, shared);
+        return shared;
+    }
+
+    private TimeoutException timeoutError(long timeout) {
+        return new TimeoutException(String.format("Graph[%s] execute timeout after %dms", plan.getGraphId(), timeout));
+    }
+
+    private RejectedExecutionException rejected() {
+        metrics.rejectedExecutions.increment();
+        return new RejectedExecutionException(String.format("Graph[%s] concurrent executions exceed %d",
+                plan.getGraphId(), options.getMaxConcurrentExecutions()));
+    }
+
+    private ExecuteContext newInput(GraphData input, long timeout, HistoryMode historyMode) {
+        return new ExecuteContext(input, "input")
+                .setScope(new ExecuteScope(timeout, TimeUnit.MILLISECONDS))
+                .setRecordHistory(isRecordHistory(historyMode));
+    }
+
+    private boolean isRecordHistory(@NonNull HistoryMode historyMode) {
+        switch (historyMode) {
+            case NONE:
+                return false;
+            case SAMPLED:
+                return ThreadLocalRandom.current().nextDouble() < options.getHistorySampleRate();
+            case FULL:
+            default:
+                return true;
+        }
+    }
+
+    private ExecuteResult<GraphData> toResult(ExecuteContext executeContext) {
+        GraphData data = null == executeContext ? null : executeContext.getData();
         if (null == data) {
             data = GraphData.ofFailure(new NullPointerException("no result"));
         }
-        if (null == history) {
-            history = new ArrayList<>();
+        if (null == executeContext || executeContext.getHistorySize() == 0) {
+            return new ExecuteResult<>(data, new ArrayList<>(0));
+        }
+        // 执行历史在读取时才展开
+        return new ExecuteResult<>(data, () -> Arrays.stream(executeContext.getHistory())
+                .map(h -> new ExecuteResult.History<>(h.getResult(), h.getExecuteNode())).collect(Collectors.toList()));
+    }
+
+    /**
+     * 关闭执行器独占的线程池, 共享线程池不受影响
+     */
+    @Override
+    public void close() {
+        if (null != ownedExecutor) {
+            ownedExecutor.shutdown();
+        }
+    }
+
+    /**
+     * 一次进行中的执行
+     * 合并执行由多个调用方共享, 不因某个调用方超时而取消, 只在截止时间到达时取消
+     */
+    private static final class Run {
+        private final ExecuteContext context;
+        private final RedFutureOf<ExecuteContext> future;
+        private final boolean shared;
+
+        Run(ExecuteContext context, RedFutureOf<ExecuteContext> future, boolean shared) {
+            this.context = context;
+            this.future = future;
+            this.shared = shared;
+        }
+
+        // 调用方超时或被中断
+        void cancel() {
+            if (!shared) {
+                context.getScope().cancel();
+            }
         }
-        return new ExecuteResult<>(data, history);
     }
 }
@@ -4,8 +4,12 @@ import com.dvbug.dagengine.graph.GraphData;
 import lombok.*;
 import lombok.experimental.Accessors;
 
-import java.util.Stack;
+import java.util.EmptyStackException;
 
+/**
+ * 执行上下文
+ * 执行历史是不可变的持久化链表, 复制上下文时共享历史, 追加历史为 O(1), 只在读取时展开
+ */
 @ToString
 public class ExecuteContext {
 
@@ -25,7 +29,21 @@ public class ExecuteContext {
     @Setter(AccessLevel.MODULE)
     @Accessors(chain = true)
     private GraphData data;
-    private final Stack<ExecuteHistoryItem> history = new Stack<>();
+    // 执行作用域, 只在输入上下文上设置
+    @Getter(AccessLevel.MODULE)
+    @Setter(AccessLevel.MODULE)
+    @Accessors(chain = true)
+    @ToString.Exclude
+    private ExecuteScope scope;
+    // 是否记录执行历史, 只在输入上下文上设置, 复制上下文时继承
+    @Getter(AccessLevel.MODULE)
+    @Setter(AccessLevel.MODULE)
+    @Accessors(chain = true)
+    @ToString.Exclude
+    private boolean recordHistory = true;
+    // 最新的历史节点, 为空表示没有历史
+    @ToString.Exclude
+    private HistoryNode history;
 
     ExecuteContext() {
     }
@@ -37,24 +55,66 @@ public class ExecuteContext {
     ExecuteContext clone(ExecuteContext context) {
         if (null != context) {
             this.setData(context.getData()).setExecuteNode(context.getExecuteNode());
-            if (!context.history.isEmpty()) {
-                this.history.clear();
-                context.history.forEach(this.history::push);
+            this.recordHistory = context.recordHistory;
+            if (null != context.history) {
+                this.history = context.history;
             }
         }
         return this;
     }
 
     ExecuteContext pushHistory(ExecuteHistoryItem historyItem) {
-        this.history.push(historyItem);
+        this.history = new HistoryNode(historyItem, this.history);
         return this;
     }
 
+    /**
+     * 记录一条执行历史, 不记录历史时什么也不做
+     *
+     * @param result      节点输出
+     * @param executeNode 节点名称
+     * @return 当前上下文
+     */
+    ExecuteContext pushHistory(GraphData result, String executeNode) {
+        return recordHistory ? pushHistory(new ExecuteHistoryItem(result, executeNode)) : this;
+    }
+
     ExecuteHistoryItem peekHistory() {
-        return this.history.peek();
+        if (null == history) {
+            throw new EmptyStackException();
+        }
+        return history.item;
     }
 
+    int getHistorySize() {
+        return null == history ? 0 : history.size;
+    }
+
+    /**
+     * @return 按执行顺序展开的执行历史
+     */
+    @ToString.Include(name = "history")
     public ExecuteHistoryItem[] getHistory() {
-        return this.history.toArray(new ExecuteHistoryItem[0]);
+        int size = getHistorySize();
+        ExecuteHistoryItem[] items = new ExecuteHistoryItem[size];
+        for (HistoryNode node = history; null != node; node = node.previous) {
+            items[--size] = node.item;
+        }
+        return items;
+    }
+
+    /**
+     * 持久化链表节点, 不可变, 多个上下文共享同一段前缀
+     */
+    private static final class HistoryNode {
+        private final ExecuteHistoryItem item;
+        private final HistoryNode previous;
+        private final int size;
+
+        HistoryNode(ExecuteHistoryItem item, HistoryNode previous) {
+            this.item = item;
+            this.previous = previous;
+            this.size = null == previous ? 1 : previous.size + 1;
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.dvbug.dagengine.executor;
+
+/**
+ * DAG图执行模式
+ */
+public enum ExecuteMode {
+    /**
+     * 按路径展开执行, 多入边节点在每条到达它的路径上各执行一次
+     */
+    PATH,
+    /**
+     * 每次请求每个节点最多执行一次, 输出由所有下游共享
+     * 多入边节点以第一个(按入边顺序)成功的上游输出作为入参
+     */
+    SHARED,
+    /**
+     * 依赖计数调度, 每次请求每个节点最多执行一次
+     * 节点在全部上游结束时以第一个(按入边顺序)成功的上游输出作为入参执行, 就绪的节点尽量在当前线程继续执行,
+     * 每次请求只分配按节点编号索引的计数数组, 适合节点较多、较宽的图
+     */
+    COUNTING
+}
@@ -6,13 +6,45 @@ import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 
 import java.util.List;
+import java.util.function.Supplier;
 
-@Getter
+/**
+ * 执行结果
+ * 执行历史在第一次读取时展开, 不读取历史的调用方没有额外开销
+ */
 @ToString
-@RequiredArgsConstructor(access = AccessLevel.MODULE)
 public class ExecuteResult<T> {
+    @Getter
     private final T data;
-    private final List<History<T>> history;
+    @ToString.Exclude
+    private Supplier<List<History<T>>> historySupplier;
+    @ToString.Exclude
+    private volatile List<History<T>> history;
+
+    ExecuteResult(T data, List<History<T>> history) {
+        this.data = data;
+        this.history = history;
+    }
+
+    ExecuteResult(T data, Supplier<List<History<T>>> historySupplier) {
+        this.data = data;
+        this.historySupplier = historySupplier;
+    }
+
+    @ToString.Include(name = "history")
+    public List<History<T>> getHistory() {
+        List<History<T>> result = history;
+        if (null == result) {
+            synchronized (this) {
+                result = history;
+                if (null == result) {
+                    history = result = historySupplier.get();
+                    historySupplier = null;
+                }
+            }
+        }
+        return result;
+    }
 
     @Getter
     @ToString
@@ -0,0 +1,198 @@
+package com.dvbug.dagengine.executor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 执行作用域, 线程安全的
+ * 一次执行对应一个根作用域, 分叉的每条子路径对应一个子作用域
+ * 作用域取消后其自身及全部子作用域内未开始的节点不再执行, 正在执行节点的线程被中断
+ * 作用域可以带有截止时间, 子作用域继承父作用域的截止时间, 超过截止时间的作用域视为已取消
+ * 子作用域和正在执行的线程都登记在CAS维护的链表上, 进入、退出和分叉不加锁
+ */
+final class ExecuteScope {
+    // 当前线程正在执行节点的登记, 节点内同步发起的嵌套执行会压栈
+    private static final ThreadLocal<Deque<Running>> CURRENT = ThreadLocal.withInitial(ArrayDeque::new);
+    private static final AtomicReferenceFieldUpdater<ExecuteScope, Child> CHILDREN =
+            AtomicReferenceFieldUpdater.newUpdater(ExecuteScope.class, Child.class, "children");
+    private static final AtomicReferenceFieldUpdater<ExecuteScope, Running> RUNNING =
+            AtomicReferenceFieldUpdater.newUpdater(ExecuteScope.class, Running.class, "running");
+    // 作用域取消后的子作用域链表, 之后分叉的子作用域直接为取消状态
+    private static final Child CLOSED = new Child(null, null);
+
+    // 截止时间, System.nanoTime() 时间基准
+    private final long deadline;
+    private final boolean hasDeadline;
+    private volatile boolean cancelled;
+    // 子作用域链表头
+    private volatile Child children;
+    // 正在执行节点的线程链表头, 已退出的登记在链表头时移除, 其余随作用域一起回收
+    private volatile Running running;
+
+    ExecuteScope() {
+        this(false, 0);
+    }
+
+    /**
+     * @param timeout 距离截止时间的时长
+     * @param unit    时长单位
+     */
+    ExecuteScope(long timeout, TimeUnit unit) {
+        this(true, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    private ExecuteScope(boolean hasDeadline, long deadline) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+    }
+
+    /**
+     * @return 当前线程正在执行节点的作用域, 不在节点执行中返回 null
+     */
+    static ExecuteScope current() {
+        Running current = CURRENT.get().peek();
+        return null == current ? null : current.scope;
+    }
+
+    /**
+     * 创建子作用域, 父作用域已取消时子作用域也是取消状态
+     *
+     * @return 子作用域
+     */
+    ExecuteScope fork() {
+        ExecuteScope child = new ExecuteScope(hasDeadline, deadline);
+        while (true) {
+            Child head = children;
+            if (head == CLOSED || cancelled) {
+                child.cancelled = true;
+                return child;
+            }
+            if (CHILDREN.compareAndSet(this, head, new Child(child, head))) {
+                return child;
+            }
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled || remainingNanos() <= 0;
+    }
+
+    boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    /**
+     * @return 距离截止时间的纳秒数, 没有截止时间返回 {@link Long#MAX_VALUE}
+     */
+    long remainingNanos() {
+        return hasDeadline ? deadline - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * 取消作用域及其全部子作用域
+     */
+    void cancel() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        for (Running r = running; null != r; r = r.next) {
+            r.interrupt();
+        }
+        for (Child c = CHILDREN.getAndSet(this, CLOSED); null != c && c != CLOSED; c = c.next) {
+            c.scope.cancel();
+        }
+    }
+
+    /**
+     * 当前线程开始在作用域内执行节点
+     *
+     * @return 作用域已取消或超过截止时间时返回false, 节点不应再执行
+     */
+    boolean enter() {
+        if (remainingNanos() <= 0) {
+            cancel();
+            return false;
+        }
+        if (cancelled) {
+            return false;
+        }
+        Running current = new Running(this, Thread.currentThread());
+        do {
+            current.next = running;
+        } while (!RUNNING.compareAndSet(this, current.next, current));
+        // 先登记再检查, 与取消时先标记再遍历登记对应, 两者至少有一方看到对方
+        if (cancelled) {
+            leave(current);
+            return false;
+        }
+        CURRENT.get().push(current);
+        return true;
+    }
+
+    /**
+     * 当前线程结束在作用域内执行节点, 清除因取消产生的中断标记, 避免影响线程池中的后续任务
+     */
+    void exit() {
+        leave(CURRENT.get().pop());
+    }
+
+    private void leave(Running current) {
+        current.leave();
+        RUNNING.compareAndSet(this, current, current.next);
+    }
+
+    private static final class Child {
+        private final ExecuteScope scope;
+        private final Child next;
+
+        Child(ExecuteScope scope, Child next) {
+            this.scope = scope;
+            this.next = next;
+        }
+    }
+
+    /**
+     * 一次节点执行的线程登记
+     * 取消和退出通过状态CAS互斥, 取消方抢先时由退出方等待中断完成后清除中断标记
+     */
+    private static final class Running {
+        private static final int ACTIVE = 0;
+        private static final int LEFT = 1;
+        private static final int INTERRUPTING = 2;
+        private static final int INTERRUPTED = 3;
+        private static final AtomicIntegerFieldUpdater<Running> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Running.class, "state");
+
+        private final ExecuteScope scope;
+        private final Thread thread;
+        // 入栈前设置, 之后不变
+        private Running next;
+        private volatile int state;
+
+        Running(ExecuteScope scope, Thread thread) {
+            this.scope = scope;
+            this.thread = thread;
+        }
+
+        void interrupt() {
+            if (STATE.compareAndSet(this, ACTIVE, INTERRUPTING)) {
+                thread.interrupt();
+                state = INTERRUPTED;
+            }
+        }
+
+        void leave() {
+            if (STATE.compareAndSet(this, ACTIVE, LEFT)) {
+                return;
+            }
+            while (state != INTERRUPTED) {
+                Thread.yield();
+            }
+            Thread.interrupted();
+        }
+    }
+}
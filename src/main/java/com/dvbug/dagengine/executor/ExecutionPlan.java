@@ -0,0 +1,406 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.DagGraph;
+import com.dvbug.dagengine.graph.DagNode;
+import com.dvbug.dagengine.graph.DagNodeOptions;
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.dagengine.graph.MergeDagNode;
+import com.dvbug.dagengine.graph.MergedGraphData;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * DAG图编译后的不可变执行计划, 线程安全的
+ * 在 {@link DagGraphExecutor} 构造时编译一次, 之后所有请求共享
+ * 节点使用从0开始的稠密编号(根节点为0), 上下游关系和汇聚/分叉节点全部预先计算为数组
+ * 编译之后再修改 {@link DagGraph} 不会影响已经编译的计划
+ */
+@Slf4j
+final class ExecutionPlan {
+    private final String graphId;
+    private final DagNode[] nodes;
+    // 编译时的节点执行选项快照
+    private final DagNodeOptions[] options;
+    private final Map<DagNode, Integer> ids;
+    // 下游节点编号, 顺序即分叉时子路径的优先顺序
+    private final int[][] successors;
+    // 上游节点编号, 顺序即汇聚时上游的优先顺序
+    private final int[][] predecessors;
+    // 边的条件, 与 successors 对齐, 没有带条件出边的节点为 null
+    private final Predicate<? super GraphData>[][] successorPredicates;
+    private final boolean hasEdgePredicates;
+    // 边编号, 按节点的入边连续分配, 节点第 k 条入边的编号为 edgeOffsets[节点] + k
+    private final int[] edgeOffsets;
+    // 出边编号, 与 successors 对齐
+    private final int[][] successorEdges;
+    private final int edgeCount;
+    // 多入边节点
+    private final boolean[] joins;
+    // 短路时可能在结束前不再被任何下游需要的节点
+    private final boolean[] cancellables;
+    // 拓扑序
+    private final int[] topologicalOrder;
+    // 节点入边数和出边数, 作为每次执行依赖计数的初始值
+    private final int[] predecessorCounts;
+    private final int[] successorCounts;
+    private final int terminalCount;
+    // 汇聚节点所需的成功上游数量, 0表示全部上游, 非汇聚节点为 -1
+    private final int[] quorums;
+    private final boolean hasMerge;
+    private final int root;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ExecutionPlan(DagGraph graph, DagNode[] nodes, int[][] successors, int[][] predecessors, int[] topologicalOrder) {
+        this.graphId = graph.getGraphId();
+        this.nodes = nodes;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.topologicalOrder = topologicalOrder;
+        this.root = 0;
+
+        this.options = new DagNodeOptions[nodes.length];
+        this.ids = new HashMap<>(nodes.length * 2);
+        this.joins = new boolean[nodes.length];
+        this.predecessorCounts = new int[nodes.length];
+        this.successorCounts = new int[nodes.length];
+        this.quorums = new int[nodes.length];
+        int terminalCount = 0;
+        boolean hasMerge = false;
+        for (int i = 0; i < nodes.length; i++) {
+            ids.put(nodes[i], i);
+            DagNodeOptions nodeOptions = graph.getNodeOptions(nodes[i]);
+            options[i] = null == nodeOptions ? DagNodeOptions.DEFAULT : nodeOptions;
+            joins[i] = predecessors[i].length > 1;
+            predecessorCounts[i] = predecessors[i].length;
+            successorCounts[i] = successors[i].length;
+            if (successors[i].length == 0) terminalCount++;
+            if (nodes[i] instanceof MergeDagNode) {
+                int quorum = ((MergeDagNode) nodes[i]).getQuorum();
+                quorums[i] = Math.min(quorum, predecessors[i].length);
+                hasMerge = true;
+            } else {
+                quorums[i] = -1;
+            }
+        }
+        this.terminalCount = terminalCount;
+        this.hasMerge = hasMerge;
+
+        // 按逆拓扑序计算, 全部下游都可能先于该节点决定是否执行时, 该节点才可能被取消
+        // 普通多入边节点可由其它上游先触发, 汇聚节点只在 quorum 小于上游数量时可以, 可被取消的下游会被跳过
+        this.cancellables = new boolean[nodes.length];
+        for (int i = topologicalOrder.length - 1; i >= 0; i--) {
+            int node = topologicalOrder[i];
+            boolean cancellable = successors[node].length > 0;
+            for (int child : successors[node]) {
+                boolean decidedByOthers = quorums[child] < 0 ? joins[child] : quorums[child] > 0 && quorums[child] < predecessors[child].length;
+                cancellable &= decidedByOthers || cancellables[child];
+            }
+            cancellables[node] = cancellable;
+        }
+
+        this.edgeOffsets = new int[nodes.length];
+        int edgeCount = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            edgeOffsets[i] = edgeCount;
+            edgeCount += predecessors[i].length;
+        }
+        this.edgeCount = edgeCount;
+
+        // 上游列表按上游编号和出边顺序生成, 按同样顺序遍历出边即可对应到入边下标
+        this.successorEdges = new int[nodes.length][];
+        this.successorPredicates = new Predicate[nodes.length][];
+        int[] filled = new int[nodes.length];
+        boolean hasEdgePredicates = false;
+        for (int i = 0; i < nodes.length; i++) {
+            successorEdges[i] = new int[successors[i].length];
+            for (int j = 0; j < successors[i].length; j++) {
+                int child = successors[i][j];
+                successorEdges[i][j] = edgeOffsets[child] + filled[child]++;
+                Predicate<? super GraphData> predicate = graph.getEdgePredicate(nodes[child], nodes[i]);
+                if (null == predicate) {
+                    continue;
+                }
+                if (null == successorPredicates[i]) {
+                    successorPredicates[i] = new Predicate[successors[i].length];
+                }
+                successorPredicates[i][j] = predicate;
+                hasEdgePredicates = true;
+            }
+        }
+        this.hasEdgePredicates = hasEdgePredicates;
+    }
+
+    /**
+     * 编译DAG图, 只包含从根节点可达的节点
+     *
+     * @param graph 需要编译的图
+     * @return 执行计划
+     */
+    static ExecutionPlan compile(DagGraph graph) {
+        if (!graph.isWhole()) {
+            throw new IllegalArgumentException(String.format("Graph[%s] is not whole", graph.getGraphId()));
+        }
+
+        // 广度优先分配稠密编号
+        List<DagNode> order = new ArrayList<>();
+        Map<DagNode, Integer> ids = new HashMap<>();
+        List<List<DagNode>> children = new ArrayList<>();
+        order.add(graph.getRootNode());
+        ids.put(graph.getRootNode(), 0);
+        for (int i = 0; i < order.size(); i++) {
+            List<DagNode> nodeChildren = graph.getNodeChildren(order.get(i));
+            children.add(nodeChildren);
+            for (DagNode child : nodeChildren) {
+                if (!ids.containsKey(child)) {
+                    ids.put(child, order.size());
+                    order.add(child);
+                }
+            }
+        }
+
+        int size = order.size();
+        int[][] successors = new int[size][];
+        List<List<Integer>> predecessorList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            predecessorList.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            List<DagNode> nodeChildren = children.get(i);
+            successors[i] = new int[nodeChildren.size()];
+            for (int j = 0; j < nodeChildren.size(); j++) {
+                int child = ids.get(nodeChildren.get(j));
+                successors[i][j] = child;
+                predecessorList.get(child).add(i);
+            }
+        }
+        int[][] predecessors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            predecessors[i] = predecessorList.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        return new ExecutionPlan(graph, order.toArray(new DagNode[0]), successors, predecessors,
+                topologicalSort(graph.getGraphId(), successors, predecessors));
+    }
+
+    // Kahn 算法计算拓扑序, 同时检查环
+    private static int[] topologicalSort(String graphId, int[][] successors, int[][] predecessors) {
+        int size = successors.length;
+        int[] inDegree = new int[size];
+        for (int i = 0; i < size; i++) {
+            inDegree[i] = predecessors[i].length;
+        }
+        int[] sorted = new int[size];
+        int head = 0, tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (inDegree[i] == 0) sorted[tail++] = i;
+        }
+        while (head < tail) {
+            int node = sorted[head++];
+            for (int child : successors[node]) {
+                if (--inDegree[child] == 0) sorted[tail++] = child;
+            }
+        }
+        if (tail != size) {
+            throw new IllegalArgumentException(String.format("Graph[%s] has cycle", graphId));
+        }
+        return sorted;
+    }
+
+    String getGraphId() {
+        return graphId;
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    int root() {
+        return root;
+    }
+
+    DagNode node(int id) {
+        return nodes[id];
+    }
+
+    DagNodeOptions options(int id) {
+        return options[id];
+    }
+
+    /**
+     * @param node 节点
+     * @return 节点编号, 不在计划中返回 -1
+     */
+    int idOf(DagNode node) {
+        return ids.getOrDefault(node, -1);
+    }
+
+    int[] successors(int id) {
+        return successors[id];
+    }
+
+    int[] predecessors(int id) {
+        return predecessors[id];
+    }
+
+    /**
+     * @param id     节点编号
+     * @param index  下游在 {@link #successors(int)} 中的下标
+     * @param output 节点输出
+     * @return 节点输出能否沿该出边传递, 即输出成功且满足边的条件
+     */
+    boolean isOpenToSuccessor(int id, int index, GraphData output) {
+        Predicate<? super GraphData>[] predicates = successorPredicates[id];
+        return test(null == predicates ? null : predicates[index], id, output);
+    }
+
+    /**
+     * @return 图中是否有带条件的边, 没有时边是否打开只取决于上游输出是否成功
+     */
+    boolean hasEdgePredicates() {
+        return hasEdgePredicates;
+    }
+
+    /**
+     * @return 边数量, 边编号为 [0, edgeCount)
+     */
+    int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @param id    节点编号
+     * @param index 上游在 {@link #predecessors(int)} 中的下标
+     * @return 入边编号
+     */
+    int predecessorEdge(int id, int index) {
+        return edgeOffsets[id] + index;
+    }
+
+    /**
+     * @param id    节点编号
+     * @param index 下游在 {@link #successors(int)} 中的下标
+     * @return 出边编号, 即该边作为下游入边的编号
+     */
+    int successorEdge(int id, int index) {
+        return successorEdges[id][index];
+    }
+
+    /**
+     * @param id     节点编号
+     * @param output 节点的成功输出
+     * @return 满足边条件的下游节点编号, 没有带条件的出边时返回 {@link #successors(int)} 本身
+     */
+    int[] openSuccessors(int id, GraphData output) {
+        if (null == successorPredicates[id]) {
+            return successors[id];
+        }
+        int[] open = new int[successors[id].length];
+        int count = 0;
+        for (int j = 0; j < open.length; j++) {
+            if (isOpenToSuccessor(id, j, output)) open[count++] = successors[id][j];
+        }
+        return count == open.length ? successors[id] : Arrays.copyOf(open, count);
+    }
+
+    private boolean test(Predicate<? super GraphData> predicate, int parent, GraphData output) {
+        if (null == output || !output.isSucceed()) {
+            return false;
+        }
+        try {
+            return null == predicate || predicate.test(output);
+        } catch (Throwable t) {
+            log.error(String.format("failed evaluate edge predicate of %s node, edge closed. output: %s", nodes[parent].getName(), output), t);
+            return false;
+        }
+    }
+
+    boolean isJoin(int id) {
+        return joins[id];
+    }
+
+    /**
+     * @param id 节点编号
+     * @return 短路时节点能否在结束前因不再被任何下游需要而被取消
+     */
+    boolean isCancellable(int id) {
+        return cancellables[id];
+    }
+
+    boolean isTerminal(int id) {
+        return successors[id].length == 0;
+    }
+
+    /**
+     * @param id 节点编号
+     * @return 从节点出发能否只经过单出边到达终止节点, 即失败结果能否透传到终止节点
+     */
+    boolean isSingleChain(int id) {
+        int[] children = successors[id];
+        while (children.length == 1) {
+            children = successors[children[0]];
+        }
+        return children.length == 0;
+    }
+
+    int[] topologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * @return 各节点的入边数, 调用方不能修改
+     */
+    int[] predecessorCounts() {
+        return predecessorCounts;
+    }
+
+    /**
+     * @return 各节点的出边数, 调用方不能修改
+     */
+    int[] successorCounts() {
+        return successorCounts;
+    }
+
+    int terminalCount() {
+        return terminalCount;
+    }
+
+    /**
+     * @param id 节点编号
+     * @return 是否为汇聚节点({@link MergeDagNode})
+     */
+    boolean isMerge(int id) {
+        return quorums[id] >= 0;
+    }
+
+    /**
+     * @param id 汇聚节点编号
+     * @return 执行所需的成功上游数量, 0表示等待全部上游结束
+     */
+    int quorum(int id) {
+        return quorums[id];
+    }
+
+    boolean hasMerge() {
+        return hasMerge;
+    }
+
+    /**
+     * @param id          汇聚节点编号
+     * @param edgeOutputs 按入边下标获取沿该边传递的上游输出, 边关闭或上游未结束时返回 null
+     * @return 按入边顺序包含全部沿入边传递的上游输出的汇聚节点入参
+     */
+    MergedGraphData mergeInput(int id, IntFunction<GraphData> edgeOutputs) {
+        Map<String, GraphData> inputs = new LinkedHashMap<>();
+        for (int k = 0; k < predecessors[id].length; k++) {
+            GraphData output = edgeOutputs.apply(k);
+            if (null != output) {
+                inputs.put(nodes[predecessors[id][k]].getName(), output);
+            }
+        }
+        return new MergedGraphData(inputs);
+    }
+}
@@ -0,0 +1,19 @@
+package com.dvbug.dagengine.executor;
+
+/**
+ * 执行历史记录模式
+ */
+public enum HistoryMode {
+    /**
+     * 每次执行都记录历史
+     */
+    FULL,
+    /**
+     * 不记录历史, {@link ExecuteResult#getHistory()} 为空, 没有任何逐节点的历史开销
+     */
+    NONE,
+    /**
+     * 按 {@link DagExecutorOptions#getHistorySampleRate()} 的比例抽样记录历史
+     */
+    SAMPLED
+}
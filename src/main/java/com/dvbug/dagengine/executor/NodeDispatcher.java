@@ -0,0 +1,175 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.DagNodeOptions;
+import com.dvbug.dagengine.graph.InlinePolicy;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 节点调度器, 线程安全的
+ * 决定节点在调用线程上内联执行还是提交到线程池执行, 阻塞节点、设置了超时、对冲执行、舱壁或合并执行的节点总是提交到线程池执行
+ * 开启自适应内联时, 按节点近期平均耗时决定是否内联执行
+ * 舱壁指定了独立线程池的节点提交到独立线程池
+ * 设置了排队上限时, 超过上限的节点任务按 {@link OverloadPolicy} 拒绝或在提交线程上直接执行
+ * 开启关键路径优先时, 提交到同一线程池的节点任务经过 {@link ReadyQueue} 按节点关键路径耗时优先执行
+ */
+final class NodeDispatcher {
+    private final Executor[] executors;
+    private final boolean[] inline;
+    // 可以在完成上游的线程上继续执行的节点, 即不阻塞、不需要调用器特殊处理且没有禁止内联的节点
+    private final boolean[] continuable;
+    // 按平均耗时决定是否内联的节点
+    private final boolean[] adaptive;
+    private final long adaptiveThresholdNanos;
+    private final int maxQueuedTasks;
+    private final boolean callerRuns;
+    private final DagExecutorMetrics metrics;
+    private final NodeStatistics statistics;
+    // 节点所在线程池的就绪队列, 不开启关键路径优先时为 null
+    private final ReadyQueue[] readyQueues;
+
+    NodeDispatcher(ExecutionPlan plan, DagExecutorOptions options, Executor executor,
+                   DagExecutorMetrics metrics, NodeStatistics statistics) {
+        this.executors = new Executor[plan.size()];
+        this.maxQueuedTasks = options.getMaxQueuedTasks();
+        this.callerRuns = options.getOverloadPolicy() == OverloadPolicy.CALLER_RUNS;
+        this.metrics = metrics;
+        this.statistics = statistics;
+        this.inline = new boolean[plan.size()];
+        this.continuable = new boolean[plan.size()];
+        this.adaptive = new boolean[plan.size()];
+        this.adaptiveThresholdNanos = TimeUnit.MICROSECONDS.toNanos(options.getAdaptiveInlineThreshold());
+        for (int i = 0; i < inline.length; i++) {
+            DagNodeOptions nodeOptions = plan.options(i);
+            boolean inlinable = isInlinable(nodeOptions);
+            InlinePolicy policy = nodeOptions.getInline();
+            inline[i] = inlinable && (policy == InlinePolicy.ALWAYS || policy == InlinePolicy.AUTO && options.isInline());
+            adaptive[i] = inlinable && policy == InlinePolicy.AUTO && !inline[i] && adaptiveThresholdNanos > 0;
+            continuable[i] = inlinable && policy != InlinePolicy.NEVER;
+            executors[i] = null != nodeOptions.getBulkhead() && null != nodeOptions.getBulkhead().getExecutor()
+                    ? nodeOptions.getBulkhead().getExecutor() : executor;
+        }
+        this.readyQueues = options.isPrioritized() ? newReadyQueues(executors) : null;
+    }
+
+    // 同一线程池的节点共用一个就绪队列
+    private static ReadyQueue[] newReadyQueues(Executor[] executors) {
+        Map<Executor, ReadyQueue> queues = new IdentityHashMap<>();
+        ReadyQueue[] readyQueues = new ReadyQueue[executors.length];
+        for (int i = 0; i < executors.length; i++) {
+            readyQueues[i] = queues.computeIfAbsent(executors[i], ReadyQueue::new);
+        }
+        return readyQueues;
+    }
+
+    // 阻塞节点, 以及需要在调用器中统一处理超时、对冲、舱壁、合并执行的节点不能内联
+    private static boolean isInlinable(DagNodeOptions options) {
+        return !options.isBlocking() && options.getTimeout() <= 0 && !options.isHedged()
+                && null == options.getBulkhead() && null == options.getCoalesceKey();
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 节点本次是否内联执行, 自适应内联的节点随近期平均耗时变化
+     */
+    boolean isInline(int node) {
+        if (inline[node]) {
+            return true;
+        }
+        if (!adaptive[node]) {
+            return false;
+        }
+        long mean = statistics.mean(node);
+        return mean > 0 && mean < adaptiveThresholdNanos;
+    }
+
+    /**
+     * @param parent 上游节点编号
+     * @param node   节点编号
+     * @return 节点能否不经过线程池, 直接在完成上游的线程上执行
+     * 节点本次内联执行, 或上游在线程池中执行(当前线程已属于节点所在线程池)且节点不阻塞时可以, 不受是否开启内联影响;
+     * 上下游使用不同线程池时不能, 避免占用舱壁的独立线程池; 禁止内联的节点、按平均耗时判断为耗时较长的自适应节点不能
+     */
+    boolean canContinue(int parent, int node) {
+        if (executors[parent] != executors[node] || !continuable[node]) {
+            return false;
+        }
+        return isInline(node) || !adaptive[node] && !isInline(parent);
+    }
+
+    /**
+     * 调度执行节点任务
+     *
+     * @param node 节点编号
+     * @param task 节点任务
+     * @throws RejectedExecutionException 线程池拒绝执行或超过排队上限
+     */
+    void dispatch(int node, Runnable task) {
+        if (isInline(node)) {
+            task.run();
+        } else if (maxQueuedTasks <= 0) {
+            submit(node, task);
+        } else if (metrics.queuedTasks.incrementAndGet() > maxQueuedTasks) {
+            metrics.queuedTasks.decrementAndGet();
+            if (callerRuns) {
+                metrics.callerRunsTasks.increment();
+                task.run();
+            } else {
+                metrics.rejectedTasks.increment();
+                throw new RejectedExecutionException(String.format("queued node tasks exceed %d", maxQueuedTasks));
+            }
+        } else {
+            try {
+                submit(node, () -> {
+                    metrics.queuedTasks.decrementAndGet();
+                    task.run();
+                });
+            } catch (RejectedExecutionException e) {
+                metrics.queuedTasks.decrementAndGet();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 将任务直接提交到节点所在线程池, 不内联执行, 不经过就绪队列, 也不会在提交线程上执行
+     * 用于计时线程等不能执行节点和下游回调的线程
+     *
+     * @param node 节点编号
+     * @param task 任务
+     * @throws RejectedExecutionException 线程池拒绝执行
+     */
+    void offload(int node, Runnable task) {
+        try {
+            executors[node].execute(task);
+        } catch (RejectedExecutionException e) {
+            metrics.rejectedTasks.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 节点的调度优先级, 越大越先执行; 不开启关键路径优先时都为0
+     */
+    long priority(int node) {
+        return null == readyQueues ? 0 : statistics.criticalPath(node);
+    }
+
+    private void submit(int node, Runnable task) {
+        try {
+            if (null == readyQueues) {
+                executors[node].execute(task);
+            } else {
+                readyQueues[node].submit(statistics.criticalPath(node), task);
+            }
+        } catch (RejectedExecutionException e) {
+            metrics.rejectedTasks.increment();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.Bulkhead;
+import com.dvbug.dagengine.graph.DagAbortException;
+import com.dvbug.dagengine.graph.DagNode;
+import com.dvbug.dagengine.graph.DagNodeCache;
+import com.dvbug.dagengine.graph.DagNodeOptions;
+import com.dvbug.dagengine.graph.GraphData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 节点调用器, 线程安全的
+ * 统一处理节点的调度、作用域、异常、合并执行、结果缓存、舱壁、超时和对冲执行, 两种执行模式共用
+ * 节点输出为 null 表示节点因作用域取消而没有执行
+ */
+final class NodeInvoker {
+    // 对冲执行的耗时分位
+    private static final double HEDGE_QUANTILE = 0.95;
+
+    private final ExecutionPlan plan;
+    private final NodeDispatcher dispatcher;
+    private final NodeStatistics statistics;
+    // 设置了合并执行键的节点正在进行的执行, 其余节点为 null
+    private final ConcurrentMap<Object, NodeFlight>[] flights;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    NodeInvoker(ExecutionPlan plan, NodeDispatcher dispatcher, NodeStatistics statistics) {
+        this.plan = plan;
+        this.dispatcher = dispatcher;
+        this.statistics = statistics;
+        this.flights = new ConcurrentMap[plan.size()];
+        for (int i = 0; i < flights.length; i++) {
+            if (null != plan.options(i).getCoalesceKey()) {
+                flights[i] = new ConcurrentHashMap<>();
+            }
+        }
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 节点是否在调用线程上同步执行, 同步执行的节点可以直接使用 {@link #call} 获得输出
+     */
+    boolean isInline(int node) {
+        return dispatcher.isInline(node);
+    }
+
+    /**
+     * @param parent 上游节点编号
+     * @param node   节点编号
+     * @return 节点能否直接使用 {@link #call} 在完成上游的线程上执行, 不需要调度和舱壁、超时等处理
+     */
+    boolean canContinue(int parent, int node) {
+        return dispatcher.canContinue(parent, node);
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 节点的调度优先级, 越大越先执行
+     */
+    long priority(int node) {
+        return dispatcher.priority(node);
+    }
+
+    /**
+     * 在当前线程执行节点
+     *
+     * @param node  节点编号
+     * @param input 节点输入
+     * @param scope 执行作用域
+     * @return 节点输出, 作用域已取消返回 null
+     */
+    GraphData call(int node, GraphData input, ExecuteScope scope) {
+        Object cacheKey;
+        try {
+            cacheKey = cacheKey(node, input);
+        } catch (Throwable t) {
+            return GraphData.ofFailure(t);
+        }
+        GraphData cached = cached(node, cacheKey);
+        if (null != cached) {
+            return scope.isCancelled() ? null : cached;
+        }
+        return execute(node, input, cacheKey, scope);
+    }
+
+    // 节点结果缓存键, 节点没有缓存或输入不使用缓存时为 null
+    private Object cacheKey(int node, GraphData input) {
+        DagNodeCache cache = plan.options(node).getCache();
+        return null == cache ? null : cache.keyOf(input);
+    }
+
+    private GraphData cached(int node, Object cacheKey) {
+        return null == cacheKey ? null : plan.options(node).getCache().getIfPresent(cacheKey);
+    }
+
+    // 执行节点, 缓存键不为 null 时写入结果缓存
+    private GraphData execute(int node, GraphData input, Object cacheKey, ExecuteScope scope) {
+        if (!scope.enter()) {
+            return null;
+        }
+        DagNode dagNode = plan.node(node);
+        long start = statistics.isRecording(node) ? System.nanoTime() : 0;
+        GraphData output;
+        try {
+            output = dagNode.execute(input);
+        } catch (Throwable t) {
+            output = t == DagAbortException.SIGNAL ? GraphData.ABORTED : GraphData.ofFailure(t);
+        } finally {
+            scope.exit();
+        }
+        if (scope.isCancelled()) {
+            return null;
+        }
+        if (start != 0) {
+            statistics.record(node, System.nanoTime() - start);
+        }
+        if (null == output) {
+            output = GraphData.ofFailure(new NullPointerException(String.format("%s execute result is null", dagNode.getName())));
+        }
+        if (null != cacheKey) {
+            plan.options(node).getCache().put(cacheKey, output);
+        }
+        return output;
+    }
+
+    /**
+     * 调度执行节点, 完成后回调节点输出
+     * 回调恰好执行一次, 可能在调用线程或线程池线程上执行
+     * 结果缓存命中时直接在调用线程上回调, 不合并执行、不占用舱壁名额也不调度
+     *
+     * @param node     节点编号
+     * @param input    节点输入
+     * @param scope    执行作用域
+     * @param callback 节点输出回调
+     */
+    void invoke(int node, GraphData input, ExecuteScope scope, Consumer<GraphData> callback) {
+        Object cacheKey;
+        try {
+            cacheKey = cacheKey(node, input);
+        } catch (Throwable t) {
+            callback.accept(GraphData.ofFailure(t));
+            return;
+        }
+        GraphData cached = cached(node, cacheKey);
+        if (null != cached) {
+            callback.accept(scope.isCancelled() ? null : cached);
+            return;
+        }
+        if (null == flights[node]) {
+            invokeOnce(node, input, cacheKey, scope, callback);
+            return;
+        }
+
+        Object key;
+        try {
+            key = plan.options(node).getCoalesceKey().apply(input);
+        } catch (Throwable t) {
+            callback.accept(GraphData.ofFailure(t));
+            return;
+        }
+        if (null == key) {
+            invokeOnce(node, input, cacheKey, scope, callback);
+            return;
+        }
+        NodeFlight flight = new NodeFlight();
+        NodeFlight existing = flights[node].putIfAbsent(key, flight);
+        if (null != existing && existing.join(callback)) {
+            return;
+        }
+        if (null != existing) { //正在结束的执行, 不再合并
+            invokeOnce(node, input, cacheKey, scope, callback);
+            return;
+        }
+        flight.join(callback);
+        invokeOnce(node, input, cacheKey, scope, output -> {
+            flights[node].remove(key, flight);
+            flight.complete(output);
+        });
+    }
+
+    private void invokeOnce(int node, GraphData input, Object cacheKey, ExecuteScope scope, Consumer<GraphData> callback) {
+        DagNodeOptions options = plan.options(node);
+        if (!tryAcquire(node)) {
+            callback.accept(GraphData.ofFailure(bulkheadFull(node)));
+            return;
+        }
+        Runnable task = options.getTimeout() > 0 || options.isHedged()
+                ? () -> new Invocation(node, input, cacheKey, scope, callback).start()
+                : () -> callback.accept(executeAndRelease(node, input, cacheKey, scope));
+        try {
+            dispatcher.dispatch(node, task);
+        } catch (RejectedExecutionException e) {
+            release(node);
+            callback.accept(GraphData.ofFailure(e));
+        }
+    }
+
+    // 执行节点并归还舱壁名额, 下游回调不占用名额
+    private GraphData executeAndRelease(int node, GraphData input, Object cacheKey, ExecuteScope scope) {
+        try {
+            return execute(node, input, cacheKey, scope);
+        } finally {
+            release(node);
+        }
+    }
+
+    private boolean tryAcquire(int node) {
+        Bulkhead bulkhead = plan.options(node).getBulkhead();
+        return null == bulkhead || bulkhead.tryAcquire();
+    }
+
+    private void release(int node) {
+        Bulkhead bulkhead = plan.options(node).getBulkhead();
+        if (null != bulkhead) {
+            bulkhead.release();
+        }
+    }
+
+    private RejectedExecutionException bulkheadFull(int node) {
+        Bulkhead bulkhead = plan.options(node).getBulkhead();
+        return new RejectedExecutionException(String.format("%s rejected, Bulkhead[%s] is full, maxConcurrent=%d",
+                plan.node(node).getName(), bulkhead.getName(), bulkhead.getMaxConcurrent()));
+    }
+
+    /**
+     * 设置了超时或对冲执行的单次节点调用, 可能包含多次执行尝试
+     * 第一个成功或主动中止的尝试, 或最后一个结束的尝试决定节点输出, 超时以 {@link TimeoutException} 失败作为节点输出,
+     * 节点输出确定后取消仍在执行的尝试
+     * 超时和对冲由计时线程触发, 计时线程只负责提交到线程池, 不执行节点和下游回调
+     */
+    private final class Invocation {
+        private final int node;
+        private final GraphData input;
+        private final Object cacheKey;
+        private final Consumer<GraphData> callback;
+        // 全部执行尝试的父作用域
+        private final ExecuteScope scope;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private volatile ScheduledFuture<?> timeoutTimer;
+        private volatile ScheduledFuture<?> hedgeTimer;
+
+        Invocation(int node, GraphData input, Object cacheKey, ExecuteScope scope, Consumer<GraphData> callback) {
+            this.node = node;
+            this.input = input;
+            this.cacheKey = cacheKey;
+            this.callback = callback;
+            this.scope = scope.fork();
+        }
+
+        void start() {
+            DagNodeOptions options = plan.options(node);
+            if (options.getTimeout() > 0) {
+                timeoutTimer = DagTimer.schedule(this::onTimeout, options.getTimeout(), TimeUnit.MILLISECONDS);
+            }
+            long hedgeDelay = options.isHedged() ? statistics.quantile(node, HEDGE_QUANTILE) : -1;
+            if (hedgeDelay > 0) {
+                hedgeTimer = DagTimer.schedule(this::onHedge, hedgeDelay, TimeUnit.NANOSECONDS);
+            }
+            attempt();
+        }
+
+        private void attempt() {
+            GraphData output = executeAndRelease(node, input, cacheKey, scope.fork());
+            int left = pending.decrementAndGet();
+            // 主动中止是确定的结果, 不再等待其余尝试
+            if (left == 0 || (null != output && (output.isSucceed() || GraphData.isAborted(output)))) {
+                complete(output);
+            }
+        }
+
+        // 在计时线程上触发, 线程池拒绝时放弃本次对冲
+        private void onHedge() {
+            if (completed.get()) {
+                return;
+            }
+            try {
+                dispatcher.offload(node, this::hedge);
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+
+        // 对冲尝试, 开始执行时才计入未结束的尝试
+        private void hedge() {
+            if (completed.get() || !tryAcquire(node)) {
+                return;
+            }
+            pending.incrementAndGet();
+            attempt();
+        }
+
+        // 在计时线程上触发, 计时线程上只取消仍在执行的尝试, 以超时失败结束节点的回调提交到线程池执行
+        private void onTimeout() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            cancel();
+            GraphData output = timeoutFailure();
+            try {
+                dispatcher.offload(node, () -> callback.accept(output));
+            } catch (RejectedExecutionException e) {
+                // 节点线程池拒绝时改由默认线程池执行回调
+                DagExecutors.defaultExecutor().execute(() -> callback.accept(output));
+            }
+        }
+
+        private GraphData timeoutFailure() {
+            return GraphData.ofFailure(new TimeoutException(String.format("%s execute timeout after %dms",
+                    plan.node(node).getName(), plan.options(node).getTimeout())));
+        }
+
+        private void complete(GraphData output) {
+            if (completed.compareAndSet(false, true)) {
+                cancel();
+                callback.accept(output);
+            }
+        }
+
+        private void cancel() {
+            ScheduledFuture<?> timer = timeoutTimer;
+            if (null != timer) timer.cancel(false);
+            timer = hedgeTimer;
+            if (null != timer) timer.cancel(false);
+            scope.cancel();
+        }
+    }
+
+    /**
+     * 一次合并的节点执行, 结果分发给全部等待方
+     * 发起方的作用域被取消时, 其余等待方收到 {@link CancellationException} 失败
+     */
+    private static final class NodeFlight {
+        // guarded by this
+        private List<Consumer<GraphData>> waiters = new ArrayList<>(2);
+
+        /**
+         * @return 执行已结束时返回false, 调用方需要自行执行
+         */
+        synchronized boolean join(Consumer<GraphData> callback) {
+            if (null == waiters) {
+                return false;
+            }
+            waiters.add(callback);
+            return true;
+        }
+
+        void complete(GraphData output) {
+            List<Consumer<GraphData>> toNotify;
+            synchronized (this) {
+                toNotify = waiters;
+                waiters = null;
+            }
+            for (int i = 0; i < toNotify.size(); i++) {
+                if (i == 0 || null != output) {
+                    toNotify.get(i).accept(output);
+                } else {
+                    toNotify.get(i).accept(GraphData.ofFailure(new CancellationException("coalesced execution cancelled")));
+                }
+            }
+        }
+    }
+}
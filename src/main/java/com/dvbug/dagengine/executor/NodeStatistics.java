@@ -0,0 +1,160 @@
+package com.dvbug.dagengine.executor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 节点执行耗时统计, 线程安全的
+ * 每个 {@link DagGraphExecutor} 一份, 只统计需要耗时数据的节点(如开启对冲执行的节点)
+ * 开启耗时跟踪时统计全部节点的平均耗时, 并据此估算每个节点到终止节点的关键路径耗时
+ */
+final class NodeStatistics {
+    // 关键路径重新计算的样本间隔
+    static final int CRITICAL_PATH_INTERVAL = 64;
+    // 平均耗时的衰减系数, 新样本权重为 1/2^EWMA_SHIFT
+    private static final int EWMA_SHIFT = 3;
+
+    private final ExecutionPlan plan;
+    private final LatencyHistogram[] histograms;
+    // 节点平均耗时(纳秒), 不跟踪耗时时为 null, 0表示还没有样本
+    private final AtomicLongArray meanNanos;
+    private final AtomicLong samples = new AtomicLong();
+    // 节点到终止节点的关键路径耗时, 定期重新计算
+    private volatile long[] criticalPath;
+
+    /**
+     * @param plan      执行计划
+     * @param trackCost 是否统计全部节点的平均耗时
+     */
+    NodeStatistics(ExecutionPlan plan, boolean trackCost) {
+        this.plan = plan;
+        this.histograms = new LatencyHistogram[plan.size()];
+        for (int i = 0; i < histograms.length; i++) {
+            if (plan.options(i).isHedged()) {
+                histograms[i] = new LatencyHistogram();
+            }
+        }
+        this.meanNanos = trackCost ? new AtomicLongArray(plan.size()) : null;
+        this.criticalPath = trackCost ? computeCriticalPath() : null;
+    }
+
+    boolean isRecording(int node) {
+        return null != meanNanos || null != histograms[node];
+    }
+
+    void record(int node, long nanos) {
+        LatencyHistogram histogram = histograms[node];
+        if (null != histogram) {
+            histogram.record(nanos);
+        }
+        if (null != meanNanos) {
+            long sample = Math.max(1, nanos);
+            meanNanos.getAndUpdate(node, mean -> 0 == mean ? sample : mean + ((sample - mean) >> EWMA_SHIFT));
+            if (samples.incrementAndGet() % CRITICAL_PATH_INTERVAL == 0) {
+                criticalPath = computeCriticalPath();
+            }
+        }
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 节点平均耗时(纳秒), 没有样本或不跟踪耗时返回 -1
+     */
+    long mean(int node) {
+        long mean = null == meanNanos ? 0 : meanNanos.get(node);
+        return 0 == mean ? -1 : mean;
+    }
+
+    /**
+     * @param node 节点编号
+     * @return 从节点开始到终止节点最长路径的估算耗时, 越大越应优先执行; 不跟踪耗时返回0
+     */
+    long criticalPath(int node) {
+        long[] path = criticalPath;
+        return null == path ? 0 : path[node];
+    }
+
+    // 按逆拓扑序计算, 没有样本的节点按1纳秒计, 此时退化为到终止节点的最长跳数
+    private long[] computeCriticalPath() {
+        long[] path = new long[plan.size()];
+        int[] order = plan.topologicalOrder();
+        for (int i = order.length - 1; i >= 0; i--) {
+            int node = order[i];
+            long longest = 0;
+            for (int child : plan.successors(node)) {
+                longest = Math.max(longest, path[child]);
+            }
+            path[node] = Math.max(1, meanNanos.get(node)) + longest;
+        }
+        return path;
+    }
+
+    /**
+     * @param node     节点编号
+     * @param quantile 分位, 取值 (0, 1]
+     * @return 节点耗时分位值(纳秒), 样本不足时返回 -1
+     */
+    long quantile(int node, double quantile) {
+        LatencyHistogram histogram = histograms[node];
+        return null == histogram ? -1 : histogram.quantile(quantile);
+    }
+
+    /**
+     * 对数分桶的耗时直方图, 每个2的幂区间分为4个桶, 相对误差不超过25%
+     * 每记录 {@link #DECAY_INTERVAL} 个样本所有桶计数减半, 使统计跟随近期耗时变化
+     */
+    static final class LatencyHistogram {
+        static final int MIN_SAMPLES = 32;
+        static final int DECAY_INTERVAL = 1024;
+        private static final int SUB_BUCKETS = 4;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+        private final AtomicLong recorded = new AtomicLong();
+
+        void record(long nanos) {
+            buckets.incrementAndGet(indexOf(Math.max(0, nanos)));
+            if (recorded.incrementAndGet() % DECAY_INTERVAL == 0) {
+                for (int i = 0; i < buckets.length(); i++) {
+                    buckets.getAndUpdate(i, c -> c >> 1);
+                }
+            }
+        }
+
+        long quantile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                total += buckets.get(i);
+            }
+            if (total < MIN_SAMPLES) {
+                return -1;
+            }
+            long rank = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(buckets.length() - 1);
+        }
+
+        static int indexOf(long nanos) {
+            if (nanos < SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int mantissa = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+            return exponent * SUB_BUCKETS + mantissa;
+        }
+
+        static long upperBoundOf(int index) {
+            if (index < SUB_BUCKETS) {
+                return index + 1;
+            }
+            int exponent = index / SUB_BUCKETS;
+            int mantissa = index % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + mantissa + 1) << (exponent - 2);
+        }
+    }
+}
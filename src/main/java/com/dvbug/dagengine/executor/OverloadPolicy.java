@@ -0,0 +1,16 @@
+package com.dvbug.dagengine.executor;
+
+/**
+ * {@link DagGraphExecutor} 排队节点任务超过上限时的处理策略
+ * 并发执行数量超过上限时的处理见 {@link AdmissionPolicy}
+ */
+public enum OverloadPolicy {
+    /**
+     * 立即拒绝, 节点任务以 {@link java.util.concurrent.RejectedExecutionException} 失败结果结束
+     */
+    REJECT,
+    /**
+     * 节点任务直接在提交它的线程上执行
+     */
+    CALLER_RUNS
+}
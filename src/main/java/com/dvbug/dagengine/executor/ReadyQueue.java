@@ -0,0 +1,62 @@
+package com.dvbug.dagengine.executor;
+
+import java.util.Comparator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按优先级出队的就绪节点任务队列, 线程安全的
+ * 每个任务入队时向线程池提交一个出队任务, 出队任务执行时取当前优先级最高的任务执行,
+ * 线程池繁忙时排队的节点任务按优先级而不是提交顺序开始执行, 相同优先级按提交顺序执行
+ */
+final class ReadyQueue {
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong((Entry e) -> -e.priority).thenComparingLong(e -> e.sequence);
+
+    private final Executor executor;
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<>(16, ORDER);
+    private final AtomicLong sequence = new AtomicLong();
+
+    ReadyQueue(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param priority 优先级, 越大越先执行
+     * @param task     节点任务
+     * @throws RejectedExecutionException 线程池拒绝执行
+     */
+    void submit(long priority, Runnable task) {
+        Entry entry = new Entry(priority, sequence.getAndIncrement(), task);
+        queue.add(entry);
+        try {
+            executor.execute(this::runNext);
+        } catch (RejectedExecutionException e) {
+            if (queue.remove(entry)) {
+                throw e;
+            }
+            // 任务已被其他出队任务取走, 队列中多出的一个任务在当前线程执行
+            runNext();
+        }
+    }
+
+    private void runNext() {
+        Entry entry = queue.poll();
+        if (null != entry) {
+            entry.task.run();
+        }
+    }
+
+    private static final class Entry {
+        private final long priority;
+        private final long sequence;
+        private final Runnable task;
+
+        Entry(long priority, long sequence, Runnable task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.javared.executor.RedSynchronizer;
+import com.dvbug.javared.future.OpenRedFutureOf;
+import com.dvbug.javared.future.RedFuture;
+import com.dvbug.javared.future.RedFutureOf;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * DAG图共享节点调度同步器, 线程安全的
+ * 每次请求每个节点最多执行一次, 结果取第一个成功的终止节点,
+ * 执行历史为该终止节点沿选中上游回溯到根节点的路径
+ * <p>
+ * 不开启短路时, 节点在全部上游结束后以第一个(按入边顺序)成功的上游输出作为入参执行
+ * 开启短路时, 节点以最先成功的上游输出作为入参立即执行, 不再被任何下游需要的节点被取消,
+ * 第一个成功的终止节点立即完成执行并取消其余仍未结束的节点
+ * 汇聚节点({@link com.dvbug.dagengine.graph.MergeDagNode})按其 quorum 就绪, 以全部成功上游的输出作为入参
+ * 不满足边条件的上游输出视为没有成功, 不会触发下游执行
+ * 输入失败时与逐路径模式一致, 不执行任何节点, 失败结果沿单出边透传到终止节点, 遇到分叉则没有结果
+ */
+@Slf4j
+final class SharedGraphSynchronizer extends RedSynchronizer<ExecuteContext, ExecuteContext> {
+    private static final int UNDECIDED = -2;
+    private static final int SKIPPED = -3;
+    // 没有输出的节点结果
+    private static final Object NO_OUTPUT = new Object();
+
+    private final ExecutionPlan plan;
+    private final NodeInvoker invoker;
+    private final boolean shortCircuit;
+
+    public SharedGraphSynchronizer(ExecutionPlan plan, NodeInvoker invoker, boolean shortCircuit) {
+        this.plan = plan;
+        this.invoker = invoker;
+        this.shortCircuit = shortCircuit;
+    }
+
+    @Override
+    protected Result<ExecuteContext> handle(ExecuteContext input) {
+        return produceFutureOf(ExecuteContext.class).byExecuting(() -> new Execution(input).start());
+    }
+
+    /**
+     * 单次请求的执行状态, 全部为按节点编号索引的原子数组, 不为节点和边创建 future 与回调
+     */
+    private final class Execution {
+        private final ExecuteContext input;
+        private final ExecuteScope scope;
+        private final OpenRedFutureOf<ExecuteContext> result = RedFuture.futureOf();
+        // 节点结果槽, null 表示未结束, NO_OUTPUT 表示没有执行或被取消, 其余为节点输出
+        private final AtomicReferenceArray<Object> outputs;
+        // 沿边传递的上游输出, 边关闭时为 null, 图中没有带条件的边时为 null
+        private final AtomicReferenceArray<GraphData> edges;
+        // 节点选中的上游编号, 根节点为 -1
+        private final AtomicIntegerArray chosen;
+        // 节点尚未结束的上游数量
+        private final AtomicIntegerArray remainingParents;
+        // 节点尚未决定是否执行的下游数量, 短路时降为0的节点不再被需要
+        private final AtomicIntegerArray remainingConsumers;
+        // 汇聚节点已成功的上游数量, 图中没有汇聚节点时为 null
+        private final AtomicIntegerArray succeeded;
+        // 尚未结束的终止节点数量
+        private final AtomicInteger remainingTerminals;
+        // 节点执行作用域, 只在短路时使用, 用于取消不再被需要的节点, 不可能被取消的节点为 null
+        private final AtomicReferenceArray<ExecuteScope> scopes;
+
+        Execution(ExecuteContext input) {
+            int size = plan.size();
+            this.input = input;
+            this.scope = null == input.getScope() ? new ExecuteScope() : input.getScope();
+            this.outputs = new AtomicReferenceArray<>(size);
+            this.edges = plan.hasEdgePredicates() ? new AtomicReferenceArray<>(plan.edgeCount()) : null;
+            this.chosen = new AtomicIntegerArray(size);
+            this.remainingParents = new AtomicIntegerArray(plan.predecessorCounts());
+            this.remainingConsumers = new AtomicIntegerArray(plan.successorCounts());
+            this.succeeded = plan.hasMerge() ? new AtomicIntegerArray(size) : null;
+            this.remainingTerminals = new AtomicInteger(plan.terminalCount());
+            this.scopes = shortCircuit ? new AtomicReferenceArray<>(size) : null;
+            for (int i = 0; i < size; i++) {
+                chosen.set(i, UNDECIDED);
+            }
+        }
+
+        RedFutureOf<ExecuteContext> start() {
+            int root = plan.root();
+            if (!input.getData().isSucceed()) {
+                result.tryResolve(plan.isSingleChain(root) ? abandon() : null);
+            } else {
+                chosen.set(root, -1);
+                Continuation next = new Continuation();
+                schedule(root, input.getData(), next);
+                run(next);
+            }
+            return result;
+        }
+
+        // 节点结束后在当前线程循环执行可以继续的下游, 连续的内联节点和跳过的节点不会逐节点递归
+        private void drive(int node, GraphData output) {
+            Continuation next = new Continuation();
+            done(node, output, next);
+            run(next);
+        }
+
+        private void run(Continuation next) {
+            while (next.node >= 0) {
+                int node = next.node;
+                GraphData nodeInput = next.input;
+                ExecuteScope nodeScope = next.scope;
+                next.clear();
+                done(node, null == nodeScope ? null : invoker.call(node, nodeInput, nodeScope), next);
+            }
+        }
+
+        // 节点结束, 通知终止节点处理和全部下游, 每条出边的条件只在这里求值一次
+        private void done(int node, GraphData output, Continuation next) {
+            outputs.set(node, null == output ? NO_OUTPUT : output);
+            if (plan.isTerminal(node)) {
+                onTerminalDone(node, output);
+                return;
+            }
+            int[] children = plan.successors(node);
+            for (int j = 0; j < children.length; j++) {
+                GraphData edgeOutput = plan.isOpenToSuccessor(node, j, output) ? output : null;
+                if (null != edges) {
+                    edges.set(plan.successorEdge(node, j), edgeOutput);
+                }
+                onParentDone(children[j], node, edgeOutput, next);
+            }
+        }
+
+        // 沿节点第 k 条入边传递的上游输出, 边关闭或上游没有成功时为 null
+        private GraphData edgeOutput(int node, int k) {
+            if (null != edges) {
+                return edges.get(plan.predecessorEdge(node, k));
+            }
+            GraphData output = output(plan.predecessors(node)[k]);
+            return null != output && output.isSucceed() ? output : null;
+        }
+
+        private GraphData output(int node) {
+            Object output = outputs.get(node);
+            return output instanceof GraphData ? (GraphData) output : null;
+        }
+
+        // 上游结束, 短路时最先成功的上游立即触发执行, 否则等全部上游结束后按入边顺序选择
+        private void onParentDone(int node, int parent, GraphData output, Continuation next) {
+            if (plan.isMerge(node)) {
+                onMergeParentDone(node, parent, output, next);
+                return;
+            }
+            if (!plan.isJoin(node)) { //单入边节点不需要计数, 唯一的上游结束即决定执行或跳过
+                if (null != output && output.isSucceed() && chosen.compareAndSet(node, UNDECIDED, parent)) {
+                    decided(node, next);
+                    schedule(node, output, next);
+                } else if (chosen.compareAndSet(node, UNDECIDED, SKIPPED)) {
+                    decided(node, next);
+                    skip(node, next);
+                }
+                return;
+            }
+            if (shortCircuit && null != output && output.isSucceed()
+                    && chosen.compareAndSet(node, UNDECIDED, parent)) {
+                decided(node, next);
+                schedule(node, output, next);
+            }
+            if (remainingParents.decrementAndGet(node) > 0) {
+                return;
+            }
+            if (!shortCircuit) {
+                int p = chooseParent(node);
+                if (p >= 0 && chosen.compareAndSet(node, UNDECIDED, p)) {
+                    schedule(node, output(p), next);
+                    return;
+                }
+            }
+            if (chosen.compareAndSet(node, UNDECIDED, SKIPPED)) {
+                decided(node, next);
+                skip(node, next);
+            }
+        }
+
+        // 按入边顺序选择第一个成功且满足边条件的上游, 没有返回 -1
+        private int chooseParent(int node) {
+            int[] parents = plan.predecessors(node);
+            for (int k = 0; k < parents.length; k++) {
+                if (null != edgeOutput(node, k)) {
+                    return parents[k];
+                }
+            }
+            return -1;
+        }
+
+        // 汇聚节点的上游结束, 成功上游达到 quorum 个或全部上游结束时执行
+        private void onMergeParentDone(int node, int parent, GraphData output, Continuation next) {
+            int quorum = plan.quorum(node);
+            if (quorum > 0 && null != output && output.isSucceed()
+                    && succeeded.incrementAndGet(node) == quorum && chosen.compareAndSet(node, UNDECIDED, parent)) {
+                decided(node, next);
+                schedule(node, plan.mergeInput(node, k -> edgeOutput(node, k)), next);
+            }
+            if (remainingParents.decrementAndGet(node) > 0) {
+                return;
+            }
+            int first = quorum == 0 ? chooseParent(node) : -1;
+            if (first >= 0 && chosen.compareAndSet(node, UNDECIDED, first)) {
+                decided(node, next);
+                schedule(node, plan.mergeInput(node, k -> edgeOutput(node, k)), next);
+                return;
+            }
+            if (chosen.compareAndSet(node, UNDECIDED, SKIPPED)) {
+                decided(node, next);
+                skip(node, next);
+            }
+        }
+
+        // 节点已决定是否执行, 短路时取消不再被任何下游需要的上游
+        private void decided(int node, Continuation next) {
+            if (!shortCircuit) {
+                return;
+            }
+            for (int parent : plan.predecessors(node)) {
+                if (remainingConsumers.decrementAndGet(parent) > 0 || null != outputs.get(parent)) {
+                    continue;
+                }
+                ExecuteScope parentScope = scopes.get(parent);
+                if (null != parentScope) {
+                    parentScope.cancel();
+                } else if (chosen.compareAndSet(parent, UNDECIDED, SKIPPED)) {
+                    decided(parent, next);
+                    skip(parent, next);
+                }
+            }
+        }
+
+        // 短路时第一个成功的终止节点直接完成执行, 其余节点不再需要; 否则等全部终止节点结束
+        private void onTerminalDone(int terminal, GraphData output) {
+            if (shortCircuit && null != output && output.isSucceed() && !result.isDone()) {
+                result.tryResolve(collect(terminal));
+                scope.cancel();
+            }
+            if (remainingTerminals.decrementAndGet() == 0 && !result.isDone()) {
+                result.tryResolve(collect());
+            }
+        }
+
+        // 跳过节点, 当前线程没有待继续的节点时留给循环处理
+        private void skip(int node, Continuation next) {
+            if (next.node < 0) {
+                next.skip(node);
+            } else {
+                drive(node, null);
+            }
+        }
+
+        // 内联节点在当前线程没有待继续的节点时留给循环执行, 其余交给调度
+        private void schedule(int node, GraphData nodeInput, Continuation next) {
+            ExecuteScope nodeScope = scopeOf(node);
+            if (next.node < 0 && invoker.isInline(node)) {
+                next.execute(node, nodeInput, nodeScope);
+                return;
+            }
+            invoker.invoke(node, nodeInput, nodeScope, output -> drive(node, output));
+        }
+
+        // 只为可能被取消的节点创建子作用域, 其余节点直接使用请求的作用域
+        private ExecuteScope scopeOf(int node) {
+            if (!shortCircuit || !plan.isCancellable(node)) {
+                return scope;
+            }
+            ExecuteScope nodeScope = scope.fork();
+            scopes.set(node, nodeScope);
+            return nodeScope;
+        }
+
+        // 失败的输入作为执行结果
+        private ExecuteContext abandon() {
+            return new ExecuteContext().clone(input).pushHistory(input.getData(), input.getExecuteNode());
+        }
+
+        // 取第一个成功的终止节点
+        private ExecuteContext collect() {
+            for (int node = 0; node < plan.size(); node++) {
+                GraphData output = output(node);
+                if (plan.isTerminal(node) && null != output && output.isSucceed()) {
+                    return collect(node);
+                }
+            }
+            return null;
+        }
+
+        // 回溯终止节点的选中路径作为执行历史
+        private ExecuteContext collect(int terminal) {
+            ExecuteContext context = new ExecuteContext(output(terminal), plan.node(terminal).getName());
+            if (!input.isRecordHistory()) {
+                return context.setRecordHistory(false);
+            }
+
+            int depth = 0;
+            for (int n = terminal; n >= 0; n = chosen.get(n)) {
+                depth++;
+            }
+            int[] path = new int[depth];
+            for (int n = terminal; n >= 0; n = chosen.get(n)) {
+                path[--depth] = n;
+            }
+            for (int n : path) {
+                context.pushHistory(output(n), plan.node(n).getName());
+            }
+            return context;
+        }
+    }
+
+    /**
+     * 当前线程上待继续处理的节点, 每次最多一个
+     */
+    private static final class Continuation {
+        private int node = -1;
+        private GraphData input;
+        // 执行作用域, 跳过的节点为 null
+        private ExecuteScope scope;
+
+        void execute(int node, GraphData input, ExecuteScope scope) {
+            this.node = node;
+            this.input = input;
+            this.scope = scope;
+        }
+
+        void skip(int node) {
+            this.node = node;
+        }
+
+        void clear() {
+            node = -1;
+            input = null;
+            scope = null;
+        }
+    }
+}
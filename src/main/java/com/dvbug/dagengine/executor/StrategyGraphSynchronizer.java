@@ -1,165 +1,242 @@
 package com.dvbug.dagengine.executor;
 
-import com.dvbug.dagengine.graph.DagGraph;
-import com.dvbug.dagengine.graph.DagNode;
 import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.dagengine.graph.MergedGraphData;
 import com.dvbug.javared.executor.RedSynchronizer;
-import lombok.RequiredArgsConstructor;
+import com.dvbug.javared.future.OpenRedFutureOf;
+import com.dvbug.javared.future.RedFuture;
+import com.dvbug.javared.future.RedFutureOf;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 /**
  * DAG图调度同步器, 线程安全的
+ * 按 {@link ExecutionPlan} 逐路径推进执行, 调用链结构在编译期确定, 每次请求只创建必要的节点Future
  */
 @Slf4j
 final class StrategyGraphSynchronizer extends RedSynchronizer<ExecuteContext, ExecuteContext> {
-    private static final ScheduledExecutorService SCHEDULER = Executors.newScheduledThreadPool(24);
+    private final ExecutionPlan plan;
+    private final NodeInvoker invoker;
+    // 分叉汇聚时是否取最先成功的子路径并取消其余子路径
+    private final boolean shortCircuit;
+
+    public StrategyGraphSynchronizer(ExecutionPlan plan, NodeInvoker invoker, boolean shortCircuit) {
+        this.plan = plan;
+        this.invoker = invoker;
+        this.shortCircuit = shortCircuit;
+    }
 
-    /**
-     * 内部子路径同步器
-     */
-    @RequiredArgsConstructor
-    static class SubChainSynchronizer extends RedSynchronizer<ExecuteContext, ExecuteContext> {
-        final java.util.function.Function<ExecuteContext, Result<ExecuteContext>> subChain;
+    @Override
+    protected Result<ExecuteContext> handle(ExecuteContext input) {
+        ExecuteScope scope = null == input.getScope() ? new ExecuteScope() : input.getScope();
+        return produceFutureOf(ExecuteContext.class).byExecuting(() -> {
+            OpenRedFutureOf<ExecuteContext> result = RedFuture.futureOf();
+            deepin(input, plan.root(), scope, result);
+            return result;
+        });
+    }
 
-        @Override
-        protected Result<ExecuteContext> handle(ExecuteContext ExecuteContext) {
-            return subChain.apply(ExecuteContext);
+    // 调度执行 node 节点, 并沿执行计划向下游推进, 该子路径终止时直接完成 sink
+    // 子路径上的节点共用同一个 sink, 不逐节点串联Future, 长链路不会因回调嵌套过深而溢出
+    // 连续的内联节点在当前线程循环执行, 不创建中间Future, 也不逐节点递归
+    // 子路径被取消时以 null 完成
+    // 汇聚节点的入参只包含该路径上的上游
+    private void deepin(ExecuteContext context, int node, ExecuteScope scope, OpenRedFutureOf<ExecuteContext> sink) {
+        try {
+            while (true) {
+                if (!context.getData().isSucceed()) {
+                    proceed(new ExecuteContext().clone(context), node, scope, sink);
+                    return;
+                }
+                GraphData input = plan.isMerge(node) ? MergedGraphData.of(context.getExecuteNode(), context.getData()) : context.getData();
+                if (!invoker.isInline(node)) {
+                    submit(context, node, input, scope, sink);
+                    return;
+                }
+                context = append(context, node, invoker.call(node, input, scope));
+                node = proceed(context, node, scope, sink);
+                if (node < 0) {
+                    return;
+                }
+            }
+        } catch (Throwable t) {
+            sink.tryFail(t);
         }
     }
 
-    private final DagGraph graph;
-    // 全路径调用链
-    @Deprecated
-    private final List<java.util.function.Function<ExecuteContext, Result<ExecuteContext>>> chainFuncList = null;
-    // 最优调用链
-    private final java.util.function.Function<ExecuteContext, Result<ExecuteContext>> chainFunc;
-
-    public StrategyGraphSynchronizer(DagGraph graph) {
-        this.graph = graph;
+    // 非内联节点交给调度执行, 完成后在执行线程上继续推进
+    private void submit(ExecuteContext context, int node, GraphData input, ExecuteScope scope, OpenRedFutureOf<ExecuteContext> sink) {
+        invoker.invoke(node, input, scope, output -> {
+            try {
+                ExecuteContext next = append(context, node, output);
+                int child = proceed(next, node, scope, sink);
+                if (child >= 0) {
+                    deepin(next, child, scope, sink);
+                }
+            } catch (Throwable t) {
+                sink.tryFail(t);
+            }
+        });
+    }
 
-        if (!graph.isWhole()) {
-            throw new IllegalArgumentException(String.format("Graph[%s] is not whole", graph.getGraphId()));
+    //将 node 节点的输出挂载到上游执行结果上, 节点没有执行返回 null
+    private ExecuteContext append(ExecuteContext context, int node, GraphData output) {
+        if (null == output) {
+            return null;
         }
-
-        chainFunc = autoChainBuild();
+        ExecuteContext newContext = new ExecuteContext().clone(context);
+        if (!"input".equals(context.getExecuteNode())) {
+            newContext.pushHistory(context.getData(), context.getExecuteNode());
+        }
+        return newContext.setData(output).setExecuteNode(plan.node(node).getName());
     }
 
+    // node 节点执行完成后根据出边决定后续路径
+    // 返回需要继续执行的唯一下游, 路径已终止或分叉时返回 -1
+    private int proceed(ExecuteContext context, int node, ExecuteScope scope, OpenRedFutureOf<ExecuteContext> sink) {
+        if (null == context || scope.isCancelled()) {
+            sink.tryResolve(null);
+            return -1;
+        }
+        if (!context.getData().isSucceed()) {
+            sink.tryResolve(abandon(context, node));
+            return -1;
+        }
 
-    // 从根节点开始构建一条可能成功的调用链
-    private java.util.function.Function<ExecuteContext, Result<ExecuteContext>> autoChainBuild() {
-        return (input) -> {
-            Result<ExecuteContext> chain = produce(ExecuteContext.class).byExecuting(() -> input);
-            return buildDeepin(chain, graph.getRootNode());
-        };
-    }
-
-    // 深度递归构建
-    private Result<ExecuteContext> buildDeepin(Result<ExecuteContext> chain, DagNode node) {
-        Result<ExecuteContext> currentChain = appendChain(chain, node);
-        List<DagNode> children = graph.getNodeChildren(node);
-        if (children.isEmpty()) { //终止节点
-            // fix 在最终结果中把自己加入到History中
-            return ifResult(currentChain).succeed().produce(ExecuteContext.class)
-                    .byExecuting(r ->
-                            new ExecuteContext().clone(r).pushHistory(
-                                    new ExecuteContext.ExecuteHistoryItem(r.getData(), r.getExecuteNode())));
-        } else if (children.size() == 1) { //单出边情况
-            return buildDeepin(currentChain, children.get(0));
+        if (plan.isTerminal(node)) { //终止节点
+            sink.tryResolve(terminate(context));
+            return -1;
+        }
+        int[] children = plan.openSuccessors(node, context.getData());
+        if (children.length == 0) { //出边条件都不满足, 该路径没有结果
+            sink.tryResolve(null);
+            return -1;
+        } else if (children.length == 1) { //单出边情况
+            return children[0];
         } else { //多出边情况
-            //构建下游多子路径触发执行,选者一个有效的执行结果再构建路径返回
-            //log.trace("build sub synchronizer for {} node", node.getName());
-            // 构建闭包函数, 在execute运行时将node的输出作为子路径的输入
-            java.util.function.Function<ExecuteContext, Result<ExecuteContext>> subF = (input) -> {
-                Result<ExecuteContext> subRoot = produce(ExecuteContext.class).byExecuting(() -> input);
-
-                Result[] subChains = children.stream().map(c -> buildDeepin(subRoot, c)).toArray(Result[]::new);
-
-                return ifResults(subChains).finish().produce(ExecuteContext.class) //子路径可能存在失败或全部失败,所以用finish标记
-                        .byExecuting(rs -> tryGetOneFromMultiResults(rs, subChains.length));
-            };
-            return ifResult(currentChain).succeed()
-                    .produceFutureOf(ExecuteContext.class)
-                    // 使用SubChainSynchronizer是因为,无法在 byExecuting 阶段内
-                    // 将 Result<StrategyData> 对象转化为 StrategyData 或 Future<StrategyData>
-                    // Result._future 对象只能在 SubChainSynchronizer 内部获取
-                    .byExecuting(new SubChainSynchronizer(subF)::execute);
+            //下游子路径按启动策略触发执行,选者一个有效的执行结果返回
+            new Fork(context, children, scope, sink).start(plan.options(node).getFanOut().getParallelism());
+            return -1;
         }
     }
 
-    //将 node 节点的执行挂载到上游调用链成功的情况下, 上游不成功则什么也不做
-    private Result<ExecuteContext> appendChain(Result<ExecuteContext> parent, DagNode node) {
-        return ifResult(parent).succeed().produceFutureOf(ExecuteContext.class).byExecuting(context -> {
-            String prevExecuteNode = context.getExecuteNode();
-            GraphData prevResult = context.getData();
+    /**
+     * 分叉节点的子路径汇聚
+     * 按优先顺序启动子路径, 同时最多执行 parallelism 个, 子路径没有成功结果时启动下一个, 出现成功结果后不再启动
+     * 短路时第一个成功的子路径立即完成汇聚并取消其余子路径, 否则等待已启动的子路径全部结束后按优先顺序选择
+     * 全部结束仍无成功结果则返回 null
+     */
+    private final class Fork {
+        private final ExecuteContext context;
+        private final int[] children;
+        private final ExecuteScope scope;
+        private final RedFutureOf<ExecuteContext>[] branches;
+        private final ExecuteScope[] scopes;
+        private final OpenRedFutureOf<ExecuteContext> joined;
+        // guarded by this
+        private int launched;
+        // guarded by this
+        private int running;
+        // guarded by this
+        private boolean succeeded;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Fork(ExecuteContext context, int[] children, ExecuteScope scope, OpenRedFutureOf<ExecuteContext> joined) {
+            this.context = context;
+            this.children = children;
+            this.scope = scope;
+            this.joined = joined;
+            this.branches = new RedFutureOf[children.length];
+            this.scopes = new ExecuteScope[children.length];
+        }
 
-            ExecuteContext newContext = new ExecuteContext().clone(context);
+        void start(int parallelism) {
+            for (int i = 0; i < parallelism && i < children.length; i++) {
+                launch();
+            }
+        }
 
-            if (prevResult.isSucceed()) {
-                if (!"input".equals(context.getExecuteNode())) {
-                    newContext.pushHistory(new ExecuteContext.ExecuteHistoryItem(prevResult, prevExecuteNode));
+        private void launch() {
+            int index;
+            ExecuteScope branchScope;
+            synchronized (this) {
+                if (succeeded || launched == children.length) {
+                    return;
                 }
-                return futureOf(newContext.setData(node.execute(prevResult)).setExecuteNode(node.getName()));
-            } else {
-                return futureOf(newContext);
+                index = launched++;
+                running++;
+                branchScope = scopes[index] = scope.fork();
             }
-        });
-    }
+            OpenRedFutureOf<ExecuteContext> branch = RedFuture.futureOf();
+            branches[index] = branch;
+            branch.addFinallyCallback(() -> onBranchDone(index, branch.tryGet()));
+            deepin(context, children[index], branchScope, branch);
+        }
 
-    @Override
-    protected Result<ExecuteContext> handle(ExecuteContext input) {
-        return chainFunc.apply(input);
-    }
+        private void onBranchDone(int index, ExecuteContext result) {
+            boolean success = isSucceed(result);
+            boolean first = false;
+            synchronized (this) {
+                running--;
+                if (success && !succeeded) {
+                    succeeded = first = true;
+                }
+            }
+            if (first && shortCircuit) {
+                joined.tryResolve(result);
+                cancelOthers(index);
+                return;
+            }
+            if (!success) {
+                launch();
+            }
+            boolean finished;
+            synchronized (this) {
+                finished = running == 0 && (succeeded || launched == children.length);
+            }
+            if (finished) {
+                joined.tryResolve(tryGetOneFromMultiResults(branches));
+            }
+        }
 
-    // 全路径构建
-    @Deprecated
-    private List<java.util.function.Function<ExecuteContext, Result<ExecuteContext>>> allChainBuild() {
-        return graph.getPaths().stream().map(path -> (java.util.function.Function<ExecuteContext, Result<ExecuteContext>>) (input) -> {
-            Result<ExecuteContext> chain = produce(ExecuteContext.class).byExecuting(() -> input);
-            for (DagNode s : path) {
-                chain = appendChain(chain, s);
+        private void cancelOthers(int index) {
+            ExecuteScope[] launchedScopes;
+            synchronized (this) {
+                launchedScopes = Arrays.copyOf(scopes, launched);
             }
-            return chain;
-        }).collect(Collectors.toList());
+            for (int i = 0; i < launchedScopes.length; i++) {
+                if (i != index) launchedScopes[i].cancel();
+            }
+        }
     }
 
+    // 在最终结果中把自己加入到History中
+    private ExecuteContext terminate(ExecuteContext context) {
+        return new ExecuteContext().clone(context).pushHistory(context.getData(), context.getExecuteNode());
+    }
 
-    // 不使用多路径并行方式, 父级公共节点会被相同入参多次执行
-    @Deprecated
-    private Result<ExecuteContext> processMulti(ExecuteContext input) {
-        Result[] results = chainFuncList.stream().map(f -> f.apply(input)).toArray(Result[]::new);
-        return ifResults(results).finish().produce(ExecuteContext.class)
-                .byExecuting(rs -> tryGetOneFromMultiResults(rs, results.length));
+    // 上游失败后下游节点不再执行, 失败结果沿单出边透传到终止节点, 遇到分叉则该路径没有结果
+    private ExecuteContext abandon(ExecuteContext context, int node) {
+        return plan.isSingleChain(node) ? terminate(context) : null;
     }
 
     // 对于策略引擎来说,正确结果数量 <=1 个
     // 因此只需要返回第一个成功的结果或者返回null表示所有子路径全部失败
-    protected ExecuteContext tryGetOneFromMultiResults(Results results, int resultsSize) {
-        ExecuteContext finalResult = null;
-        for (int i = 0; i < resultsSize; i++) {
-            ExecuteContext result = results.result(i, ExecuteContext.class);
-
-            if (null == finalResult && null != result && null != result.getData() && result.getData().isSucceed()) {
-                finalResult = result;
+    protected ExecuteContext tryGetOneFromMultiResults(RedFutureOf<ExecuteContext>[] results) {
+        for (RedFutureOf<ExecuteContext> future : results) {
+            if (null == future) { //未启动的子路径
+                continue;
+            }
+            ExecuteContext result = future.tryGet();
+            if (isSucceed(result)) {
+                return result;
             }
         }
-        return finalResult;
-    }
-
-    private static <T> Future<T> futureOf(T value) {
-        CompletableFuture<T> future = new CompletableFuture<>();
-        scheduleTask(0, () -> future.complete(value));
-        return future;
-    }
-
-    public static void scheduleTask(long delayMillis, Runnable runnable) {
-        scheduleTask(delayMillis, TimeUnit.MILLISECONDS, runnable);
+        return null;
     }
 
-    public static void scheduleTask(long delay, TimeUnit unit, Runnable runnable) {
-        SCHEDULER.schedule(runnable, delay, unit);
+    private static boolean isSucceed(ExecuteContext result) {
+        return null != result && null != result.getData() && result.getData().isSucceed();
     }
 }
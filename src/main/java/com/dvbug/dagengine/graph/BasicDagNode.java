@@ -2,6 +2,7 @@ package com.dvbug.dagengine.graph;
 
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Objects;
@@ -14,6 +15,9 @@ import java.util.Objects;
 abstract class BasicDagNode implements DagNode {
     private final String name;
     private final DagNodeType type;
+    @Setter
+    @NonNull
+    private DagNodeOptions options = DagNodeOptions.DEFAULT;
 
     public BasicDagNode(String name, DagNodeType type) {
         this.name = name;
@@ -26,22 +30,19 @@ abstract class BasicDagNode implements DagNode {
         // 在执行结束后,将输入参数中携带的前置执行历史转移到返回结果中,同时将本次参数压栈到最新历史中
         GraphData result;
         try {
-            doExecute(input);
             result = doExecute(input);
             if (null == result) {
                 result = GraphData.ofFailure(new NullPointerException(String.format("%s execute result is null", this.getClass().getSimpleName())));
             }
         } catch (Throwable t) {
-            result = GraphData.ofFailure(t);
+            result = t == DagAbortException.SIGNAL ? GraphData.ABORTED : GraphData.ofFailure(t);
         }
 
         if (!result.isSucceed()) {
-            if (result instanceof GraphData.GraphDataFailureHolder) {
-                if (((GraphData.GraphDataFailureHolder) result).getThrowable() instanceof DagAbortException) {
-                    log.trace("abort exe {} node with param: {}", name, input);
-                } else {
-                    log.error(String.format("failed exe %s node, some exception raising. param: %s", name, input), ((GraphData.GraphDataFailureHolder) result).getThrowable());
-                }
+            if (GraphData.isAborted(result)) {
+                log.trace("abort exe {} node with param: {}", name, input);
+            } else if (result instanceof GraphData.GraphDataFailureHolder) {
+                log.error(String.format("failed exe %s node, some exception raising. param: %s", name, input), ((GraphData.GraphDataFailureHolder) result).getThrowable());
             } else {
                 log.warn("failed exe {} node, set by user. param: {}, result: {}", name, input, result);
             }
@@ -58,7 +59,7 @@ abstract class BasicDagNode implements DagNode {
      * 返回的结果 {@link GraphData#isSucceed()} 必须为true
      * 业务自己保证下游节点认识并能够处理这个 {@link GraphData} 返回对象
      * 如果不期望下游继续执行:
-     * 1) 调用 {@link BasicDagNode#abort()} 结束本次执行和下游调用链, 推荐
+     * 1) 返回 {@link #aborted()} 结束本次执行和下游调用链, 推荐, 不创建异常; 也可以调用 {@link BasicDagNode#abort()}
      * 2) 可以返回 {@link null}, 不推荐, 除非 {@link null} 不属于正确结果
      * 3) 可以显示抛出任意异常, 不推荐, 因为系统无法知道是业务的代码异常导致的执行失败还是业务主动抛出
      *
@@ -70,7 +71,17 @@ abstract class BasicDagNode implements DagNode {
 
     /**
      * 主动中止本次执行也终止下游依赖业务执行
-     * 在开关策略中使用
+     * 在开关策略中使用, 作为 {@link #doExecute(GraphData)} 的返回值
+     *
+     * @return 共享的中止结果 {@link GraphData#ABORTED}
+     */
+    protected GraphData aborted() {
+        return GraphData.ABORTED;
+    }
+
+    /**
+     * 主动中止本次执行也终止下游依赖业务执行
+     * 在开关策略中使用, 抛出 {@link #abortError()} 返回的异常
      */
     protected void abort() {
         throw abortError();
@@ -78,10 +89,10 @@ abstract class BasicDagNode implements DagNode {
 
     /**
      * 主动中止本次执行也终止下游依赖业务执行
-     * 在开关策略中使用
+     * 在开关策略中使用, 默认返回预分配的无堆栈中止信号 {@link DagAbortException#SIGNAL}
      */
     protected DagAbortException abortError() {
-        return new DagAbortException();
+        return DagAbortException.SIGNAL;
     }
 
     @Override
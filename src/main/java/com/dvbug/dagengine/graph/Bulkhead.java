@@ -0,0 +1,85 @@
+package com.dvbug.dagengine.graph;
+
+import lombok.Getter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点舱壁, 线程安全的
+ * 限制使用同一舱壁的节点的并发执行数量, 可以在多个节点和多个图之间共享, 用于隔离同一个下游依赖
+ * 超过并发上限的节点执行立即以 {@link RejectedExecutionException} 失败, 不会排队等待
+ * 可以为舱壁指定独立的线程池, 使用该舱壁的节点提交到独立线程池执行, 不占用执行器线程池
+ */
+public final class Bulkhead {
+    @Getter
+    private final String name;
+    @Getter
+    private final int maxConcurrent;
+    /**
+     * 独立线程池, 为空时使用执行器线程池
+     */
+    @Getter
+    private final Executor executor;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+
+    private Bulkhead(String name, int maxConcurrent, Executor executor) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException(String.format("Bulkhead[%s] maxConcurrent[%d] must be positive", name, maxConcurrent));
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.executor = executor;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public static Bulkhead of(String name, int maxConcurrent) {
+        return new Bulkhead(name, maxConcurrent, null);
+    }
+
+    public static Bulkhead of(String name, int maxConcurrent, Executor executor) {
+        return new Bulkhead(name, maxConcurrent, executor);
+    }
+
+    /**
+     * 获取一个执行名额, 由执行器在节点执行前调用
+     *
+     * @return 是否获得
+     */
+    public boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * 归还执行名额, 由执行器在节点执行结束后调用
+     */
+    public void release() {
+        permits.release();
+    }
+
+    /**
+     * @return 正在执行的数量
+     */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return 因超过并发上限被拒绝的总数
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Bulkhead(name=%s, maxConcurrent=%d, active=%d)", name, maxConcurrent, getActive());
+    }
+}
@@ -3,8 +3,14 @@ package com.dvbug.dagengine.graph;
 
 /**
  * DAG调用中止异常
+ * 中止是预期内的控制流, 推荐节点直接返回 {@link GraphData#ABORTED}, 不创建异常
  */
 public class DagAbortException extends RuntimeException{
+    /**
+     * 预分配的中止信号, 没有堆栈、不可修改, 可以直接抛出
+     */
+    public static final DagAbortException SIGNAL = stackless();
+
     public DagAbortException() {
     }
 
@@ -23,4 +29,11 @@ public class DagAbortException extends RuntimeException{
     public DagAbortException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
         super(message, cause, enableSuppression, writableStackTrace);
     }
+
+    /**
+     * @return 不记录堆栈的中止异常, 创建开销与普通对象相当
+     */
+    public static DagAbortException stackless() {
+        return new DagAbortException("aborted", null, false, false);
+    }
 }
@@ -1,6 +1,7 @@
 package com.dvbug.dagengine.graph;
 
 import java.util.List;
+import java.util.function.Predicate;
 
 /**
  * DAG 图
@@ -24,6 +25,27 @@ public interface DagGraph {
 
     List<List<DagNode>> getPaths();
 
+    /**
+     * 获取指定节点在本图中的执行选项, 默认使用节点自身的选项
+     *
+     * @param node 需要查询的节点
+     * @return 节点执行选项
+     */
+    default DagNodeOptions getNodeOptions(DagNode node) {
+        return node.getOptions();
+    }
+
+    /**
+     * 获取边的条件, 上游成功结束时以其输出求值, 不满足时下游不会以该上游的输出执行
+     *
+     * @param dagNode  边终节点
+     * @param dependOn 边起节点
+     * @return 边的条件, 为 null 表示无条件
+     */
+    default Predicate<? super GraphData> getEdgePredicate(DagNode dagNode, DagNode dependOn) {
+        return null;
+    }
+
     DagNode getRootNode();
 
     DagNode getFinalNode();
@@ -20,9 +20,18 @@ public interface DagNode {
     /**
      * 节点执行方法
      * 如果返回结果为null, 或在方法内抛出异常, 或 {@link GraphData#isSucceed()} = false 都被认为是执行失败
-     * 如果期望主动中止,建议抛出 {@link DagAbortException}
+     * 如果期望主动中止,建议返回 {@link GraphData#ABORTED}, 抛出 {@link DagAbortException} 仍然有效但开销更大
      * @param input 输入
      * @return 输出
      */
     GraphData execute(GraphData input);
+
+    /**
+     * 获取节点执行选项
+     *
+     * @return 节点执行选项
+     */
+    default DagNodeOptions getOptions() {
+        return DagNodeOptions.DEFAULT;
+    }
 }
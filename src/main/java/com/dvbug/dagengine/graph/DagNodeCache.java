@@ -0,0 +1,117 @@
+package com.dvbug.dagengine.graph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * 节点结果缓存, 线程安全的
+ * 适用于输出只由输入决定的节点, 相同键的输入直接返回缓存的输出, 不再执行节点
+ * 缓存按权重上限淘汰(分段近似LRU), 可以设置写入后的存活时间, 默认不缓存失败结果
+ * 同一个缓存实例可以在多个执行器之间共享
+ */
+public final class DagNodeCache {
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 10_000;
+
+    private final Function<? super GraphData, ?> keyExtractor;
+    /**
+     * 是否缓存失败结果
+     */
+    @Getter
+    private final boolean negativeCaching;
+    private final Cache<Object, GraphData> cache;
+
+    /**
+     * @param keyExtractor    从输入提取缓存键, 返回 null 表示该输入不使用缓存
+     * @param maximumWeight   缓存权重上限, 不大于0时使用 {@link #DEFAULT_MAXIMUM_WEIGHT}
+     * @param weigher         输出的权重, 为空时每个输出权重为1
+     * @param ttl             写入后的存活时间(毫秒), 不大于0表示不过期
+     * @param negativeCaching 是否缓存失败结果
+     */
+    @Builder
+    private DagNodeCache(@NonNull Function<? super GraphData, ?> keyExtractor, long maximumWeight,
+                         ToIntFunction<? super GraphData> weigher, long ttl, boolean negativeCaching) {
+        this.keyExtractor = keyExtractor;
+        this.negativeCaching = negativeCaching;
+
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight > 0 ? maximumWeight : DEFAULT_MAXIMUM_WEIGHT)
+                .recordStats();
+        if (null == weigher) {
+            builder.weigher((k, v) -> 1);
+        } else {
+            builder.weigher((k, v) -> weigher.applyAsInt((GraphData) v));
+        }
+        if (ttl > 0) {
+            builder.expireAfterWrite(ttl, TimeUnit.MILLISECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * @param input 节点输入
+     * @return 缓存键, 为 null 表示该输入不使用缓存
+     */
+    public Object keyOf(GraphData input) {
+        return keyExtractor.apply(input);
+    }
+
+    /**
+     * @param key 缓存键
+     * @return 缓存的输出, 没有返回 null
+     */
+    public GraphData getIfPresent(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * 缓存节点输出, 未开启失败缓存时忽略失败结果
+     *
+     * @param key    缓存键
+     * @param output 节点输出
+     */
+    public void put(Object key, GraphData output) {
+        if (null != output && (output.isSucceed() || negativeCaching)) {
+            cache.put(key, output);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * @return 命中、未命中和淘汰等统计
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("DagNodeCache(size=%d, %s)", size(), stats());
+    }
+}
@@ -0,0 +1,72 @@
+package com.dvbug.dagengine.graph;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * DAG节点执行选项, 不可变对象
+ * 在 {@link com.dvbug.dagengine.executor.DagGraphExecutor} 构造时读取, 之后的修改需要重新创建执行器
+ */
+@Getter
+@ToString
+@Builder(toBuilder = true)
+public final class DagNodeOptions {
+    public static final DagNodeOptions DEFAULT = DagNodeOptions.builder().build();
+
+    /**
+     * 节点是否阻塞或耗时
+     * 阻塞节点总是提交到线程池执行, 不会在调用线程上内联执行
+     */
+    private final boolean blocking;
+
+    /**
+     * 节点内联执行策略
+     */
+    @NonNull
+    @Builder.Default
+    private final InlinePolicy inline = InlinePolicy.AUTO;
+
+    /**
+     * 节点执行超时时间(毫秒), 0表示不限制
+     * 超时后节点结果为 {@link TimeoutException} 失败, 执行节点的线程被中断, 图的其余路径继续执行
+     * 设置了超时的节点总是提交到线程池执行
+     */
+    private final long timeout;
+
+    /**
+     * 是否对冲执行, 适用于耗时长尾的节点(如远程查询)
+     * 节点执行超过其近期耗时的95分位仍未完成时, 以相同入参再发起一次执行, 取先成功的结果并取消另一次
+     * 耗时样本不足时不对冲, 开启对冲的节点总是提交到线程池执行, 节点需要能够安全地重复执行
+     */
+    private final boolean hedged;
+
+    /**
+     * 节点舱壁, 为空表示不限制
+     * 超过舱壁并发上限时节点结果为 {@link java.util.concurrent.RejectedExecutionException} 失败,
+     * 使用舱壁的节点总是提交到线程池(舱壁指定了独立线程池时为独立线程池)执行
+     */
+    private final Bulkhead bulkhead;
+
+    /**
+     * 节点结果缓存, 为空表示不缓存
+     */
+    private final DagNodeCache cache;
+
+    /**
+     * 合并执行键, 从节点输入提取, 为空表示不合并, 返回 null 表示该输入不合并
+     * 同一执行器内相同键的并发节点执行只执行一次, 结果分发给全部等待方, 适用于耗时且输出只由输入决定的节点
+     */
+    private final Function<? super GraphData, ?> coalesceKey;
+
+    /**
+     * 节点有多个下游时子路径的启动策略
+     */
+    @NonNull
+    @Builder.Default
+    private final FanOutPolicy fanOut = FanOutPolicy.PARALLEL;
+}
@@ -0,0 +1,48 @@
+package com.dvbug.dagengine.graph;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * 分叉节点的子路径启动策略, 不可变对象
+ * 子路径的优先顺序即添加边的顺序, 只在路径执行模式({@link com.dvbug.dagengine.executor.ExecuteMode#PATH})下生效
+ */
+@Getter
+@EqualsAndHashCode
+public final class FanOutPolicy {
+    /**
+     * 同时启动全部子路径
+     */
+    public static final FanOutPolicy PARALLEL = new FanOutPolicy(Integer.MAX_VALUE);
+    /**
+     * 按优先顺序逐个尝试子路径, 前一个子路径没有成功结果时才启动下一个
+     */
+    public static final FanOutPolicy SEQUENTIAL = new FanOutPolicy(1);
+
+    /**
+     * 同时执行的子路径数量上限
+     */
+    private final int parallelism;
+
+    private FanOutPolicy(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 按优先顺序启动子路径, 同时最多执行 parallelism 个, 有子路径没有成功结果时启动下一个
+     *
+     * @param parallelism 同时执行的子路径数量上限
+     * @return 启动策略
+     */
+    public static FanOutPolicy limited(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(String.format("parallelism[%d] must be positive", parallelism));
+        }
+        return parallelism == 1 ? SEQUENTIAL : new FanOutPolicy(parallelism);
+    }
+
+    @Override
+    public String toString() {
+        return this == PARALLEL ? "PARALLEL" : this == SEQUENTIAL ? "SEQUENTIAL" : "LIMITED(" + parallelism + ")";
+    }
+}
@@ -8,6 +8,12 @@ import lombok.ToString;
  * 图I/O执行数据接口
  */
 public interface GraphData {
+    /**
+     * 节点主动中止的结果, 全局共享的不可变对象
+     * 节点直接返回该结果即可中止本次执行和下游调用链, 不需要创建和抛出异常
+     */
+    GraphDataFailureHolder ABORTED = new GraphDataFailureHolder(DagAbortException.SIGNAL);
+
     boolean isSucceed();
 
     @Getter
@@ -21,4 +27,13 @@ public interface GraphData {
     static GraphDataFailureHolder ofFailure(Throwable throwable) {
         return new GraphDataFailureHolder(throwable);
     }
+
+    /**
+     * @param data 节点结果
+     * @return 是否为主动中止的结果, 包括返回 {@link #ABORTED} 和抛出 {@link DagAbortException}
+     */
+    static boolean isAborted(GraphData data) {
+        return data == ABORTED || data instanceof GraphDataFailureHolder
+                && ((GraphDataFailureHolder) data).getThrowable() instanceof DagAbortException;
+    }
 }
\ No newline at end of file
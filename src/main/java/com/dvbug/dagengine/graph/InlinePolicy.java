@@ -0,0 +1,21 @@
+package com.dvbug.dagengine.graph;
+
+/**
+ * 节点内联执行策略
+ * 内联执行即在完成其上游的线程上直接执行, 不经过线程池调度
+ * 阻塞节点以及设置了超时、对冲执行、舱壁或合并执行的节点总是提交到线程池执行, 不受该策略影响
+ */
+public enum InlinePolicy {
+    /**
+     * 由执行器决定: 开启内联时内联执行, 设置了自适应内联阈值时按节点近期平均耗时决定
+     */
+    AUTO,
+    /**
+     * 总是内联执行
+     */
+    ALWAYS,
+    /**
+     * 总是提交到线程池执行
+     */
+    NEVER
+}
@@ -0,0 +1,50 @@
+package com.dvbug.dagengine.graph;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * DAG图汇聚节点, 业务节点基类, 一次执行接收多个上游的输出
+ * 在每个节点只执行一次的执行模式({@link com.dvbug.dagengine.executor.ExecuteMode#SHARED},
+ * {@link com.dvbug.dagengine.executor.ExecuteMode#COUNTING})下:
+ * quorum 为0时在全部上游结束后执行一次, 大于0时在成功的上游达到 quorum 个时立即执行一次,
+ * 入参只包含已成功的上游, 没有满足条件的成功上游时不执行
+ * 路径执行模式({@link com.dvbug.dagengine.executor.ExecuteMode#PATH})下在每条到达它的路径上各执行一次, 入参只包含该路径上的上游
+ */
+@Getter
+public abstract class MergeDagNode extends BasicDagNode {
+    /**
+     * 执行所需的成功上游数量, 0表示等待全部上游结束
+     */
+    private final int quorum;
+
+    public MergeDagNode(String name) {
+        this(name, 0);
+    }
+
+    public MergeDagNode(String name, int quorum) {
+        super(name, DagNodeType.LOGIC);
+        if (quorum < 0) {
+            throw new IllegalArgumentException(String.format("quorum[%d] must not be negative", quorum));
+        }
+        this.quorum = quorum;
+    }
+
+    @Override
+    protected final GraphData doExecute(GraphData input) throws Throwable {
+        if (input instanceof MergedGraphData) {
+            return doMerge(((MergedGraphData) input).getInputs());
+        }
+        return doMerge(MergedGraphData.of("input", input).getInputs());
+    }
+
+    /**
+     * 汇聚执行方法, 失败约定同 {@link #doExecute(GraphData)}
+     *
+     * @param inputs 上游节点名称到其输出的映射, 按入边顺序排列, 不可修改
+     * @return 本次执行结果
+     * @throws Throwable 方法执行异常
+     */
+    protected abstract GraphData doMerge(Map<String, GraphData> inputs) throws Throwable;
+}
@@ -0,0 +1,37 @@
+package com.dvbug.dagengine.graph;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 汇聚节点的入参, 不可变对象
+ * 上游节点名称到其输出的映射, 按入边顺序排列
+ */
+@Getter
+@ToString
+public final class MergedGraphData implements GraphData {
+    private final Map<String, GraphData> inputs;
+
+    public MergedGraphData(@NonNull Map<String, GraphData> inputs) {
+        this.inputs = Collections.unmodifiableMap(new LinkedHashMap<>(inputs));
+    }
+
+    /**
+     * @param parent 上游节点名称
+     * @param input  上游节点输出
+     * @return 只包含一个上游的入参
+     */
+    public static MergedGraphData of(String parent, GraphData input) {
+        return new MergedGraphData(Collections.singletonMap(parent, input));
+    }
+
+    @Override
+    public boolean isSucceed() {
+        return true;
+    }
+}
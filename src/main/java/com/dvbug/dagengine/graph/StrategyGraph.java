@@ -6,6 +6,7 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * DAG 图
@@ -20,6 +21,10 @@ public class StrategyGraph implements DagGraph {
     private final Set<DagNode> nodes = new HashSet<>();
     @Getter(AccessLevel.NONE)
     private final Map<DagNode, Set<DagNode>> children = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<DagNode, DagNodeOptions> nodeOptions = new HashMap<>();
+    @Getter(AccessLevel.NONE)
+    private final Map<Pair<DagNode, DagNode>, Predicate<? super GraphData>> edgePredicates = new HashMap<>();
     private List<List<DagNode>> paths;
 
     public StrategyGraph(String graphId) {
@@ -60,6 +65,33 @@ public class StrategyGraph implements DagGraph {
         nodes.add(dagNode);
     }
 
+    /**
+     * 设置节点在本图中的执行选项, 覆盖节点自身的选项
+     *
+     * @param nodeName 节点名称
+     * @param options  执行选项
+     */
+    public void setNodeOptions(String nodeName, DagNodeOptions options) {
+        nodeOptions.put(toNode(nodeName), Objects.requireNonNull(options));
+    }
+
+    /**
+     * 设置分叉节点在本图中的子路径启动策略, 子路径的优先顺序即添加边的顺序
+     *
+     * @param nodeName 节点名称
+     * @param policy   启动策略
+     */
+    public void setFanOutPolicy(String nodeName, FanOutPolicy policy) {
+        DagNode node = toNode(nodeName);
+        nodeOptions.put(node, getNodeOptions(node).toBuilder().fanOut(policy).build());
+    }
+
+    @Override
+    public DagNodeOptions getNodeOptions(DagNode node) {
+        DagNodeOptions options = nodeOptions.get(node);
+        return null == options ? node.getOptions() : options;
+    }
+
     /**
      * 添加DAG边
      *
@@ -72,6 +104,19 @@ public class StrategyGraph implements DagGraph {
         addEdge(node, dependNode);
     }
 
+    /**
+     * 添加带条件的DAG边
+     * 边起节点成功结束时在完成它的线程上以其输出对条件求值, 不满足时边终节点不会以该上游的输出执行(不提交任何任务),
+     * 条件应当是无副作用的轻量判断, 求值异常视为不满足
+     *
+     * @param nodeName         边终节点名称
+     * @param nodeNameDependOn 边起节点名称
+     * @param predicate        边的条件
+     */
+    public void addEdge(String nodeName, String nodeNameDependOn, Predicate<? super GraphData> predicate) {
+        addEdge(toNode(nodeName), toNode(nodeNameDependOn), predicate);
+    }
+
     /**
      * 添加起始边
      *
@@ -81,6 +126,17 @@ public class StrategyGraph implements DagGraph {
         addEdgeFromRoot(toNode(nodeName));
     }
 
+    /**
+     * 添加带条件的起始边, 条件以图的输入求值
+     *
+     * @param nodeName  边终节点名称
+     * @param predicate 边的条件
+     * @see #addEdge(String, String, Predicate)
+     */
+    public void addEdgeFromRoot(String nodeName, Predicate<? super GraphData> predicate) {
+        addEdge(toNode(nodeName), this.rootNode, predicate);
+    }
+
     /**
      * 添加起始边
      *
@@ -128,7 +184,8 @@ public class StrategyGraph implements DagGraph {
             throw new IllegalStateException(String.format("Graph edge[%s] is invalid, cannot depend on final node in graph[%s]", edgeName, graphId));
         }
 
-        Set<DagNode> children = this.children.computeIfAbsent(dependOn, k -> new HashSet<>());
+        // 保持添加顺序, 即分叉时子路径的优先顺序
+        Set<DagNode> children = this.children.computeIfAbsent(dependOn, k -> new LinkedHashSet<>());
         if (children.contains(dagNode)) {
             throw new IllegalStateException(String.format("Graph edge[%s] is existed in graph[%s]", edgeName, graphId));
         }
@@ -136,6 +193,25 @@ public class StrategyGraph implements DagGraph {
         edgeCount++;
     }
 
+    /**
+     * 添加带条件的DAG边
+     *
+     * @param dagNode   边终节点
+     * @param dependOn  边起节点
+     * @param predicate 边的条件
+     * @see #addEdge(String, String, Predicate)
+     */
+    public void addEdge(DagNode dagNode, DagNode dependOn, Predicate<? super GraphData> predicate) {
+        Objects.requireNonNull(predicate);
+        addEdge(dagNode, dependOn);
+        edgePredicates.put(ImmutablePair.of(dependOn, dagNode), predicate);
+    }
+
+    @Override
+    public Predicate<? super GraphData> getEdgePredicate(DagNode dagNode, DagNode dependOn) {
+        return edgePredicates.get(ImmutablePair.of(dependOn, dagNode));
+    }
+
 
     @Override
     public boolean isWhole() {
@@ -1,6 +1,8 @@
 package com.dvbug.dagengine;
 
+import com.dvbug.dagengine.executor.DagExecutorOptions;
 import com.dvbug.dagengine.executor.DagGraphExecutor;
+import com.dvbug.dagengine.executor.ExecuteMode;
 import com.dvbug.dagengine.executor.ExecuteResult;
 import com.dvbug.dagengine.graph.GraphData;
 import com.dvbug.dagengine.graph.LogicDagNode;
@@ -190,6 +192,13 @@ public class MainTest {
         exe(executor, param);
     }
 
+    @Test
+    public void testShared() {
+        DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(ExecuteMode.SHARED).build());
+        GraphData param = new TestStringGraphData("Haha");
+        exe(executor, param);
+    }
+
     final int LOOP_COUNT = 10000;
 
     @Test
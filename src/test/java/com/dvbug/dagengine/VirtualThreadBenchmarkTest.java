@@ -0,0 +1,91 @@
+package com.dvbug.dagengine;
+
+import com.dvbug.dagengine.executor.DagExecutorOptions;
+import com.dvbug.dagengine.executor.DagExecutors;
+import com.dvbug.dagengine.executor.DagGraphExecutor;
+import com.dvbug.dagengine.executor.ExecuteMode;
+import com.dvbug.dagengine.graph.DagNodeOptions;
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.dagengine.graph.LogicDagNode;
+import com.dvbug.dagengine.graph.StrategyGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * I/O密集图上虚拟线程与平台线程池的吞吐对比, 需要 Java 21+
+ */
+public class VirtualThreadBenchmarkTest {
+    static final int EXECUTIONS = 2000;
+    static final int CALLERS = 256;
+    static final long IO_MILLIS = 20;
+
+    static class IoDagNode extends LogicDagNode {
+        IoDagNode(String name) {
+            super(name);
+            setOptions(DagNodeOptions.builder().blocking(true).build());
+        }
+
+        @Override
+        protected GraphData doExecute(GraphData input) throws Throwable {
+            Thread.sleep(IO_MILLIS);
+            return input;
+        }
+    }
+
+    // root -> (io1, io2, io3) -> io4 -> final
+    static StrategyGraph ioGraph() {
+        StrategyGraph graph = new StrategyGraph("io-graph");
+        for (String name : new String[]{"io1", "io2", "io3", "io4"}) {
+            graph.addNode(new IoDagNode(name));
+        }
+        graph.addEdgeFromRoot("io1");
+        graph.addEdgeFromRoot("io2");
+        graph.addEdgeFromRoot("io3");
+        graph.addEdge("io4", "io1");
+        graph.addEdge("io4", "io2");
+        graph.addEdge("io4", "io3");
+        graph.addEdgeToFinal("io4");
+        return graph;
+    }
+
+    static double throughput(DagGraphExecutor executor) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<GraphData>> results = new ArrayList<>(EXECUTIONS);
+            long start = System.nanoTime();
+            for (int i = 0; i < EXECUTIONS; i++) {
+                results.add(callers.submit(() -> executor.execute(new MainTest.TestStringGraphData("io"), 30_000).getData()));
+            }
+            for (Future<GraphData> result : results) {
+                Assertions.assertTrue(result.get().isSucceed());
+            }
+            return EXECUTIONS / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @Test
+    public void benchmark() throws Exception {
+        Assumptions.assumeTrue(DagExecutors.isVirtualThreadSupported(), "virtual threads require Java 21+");
+
+        StrategyGraph graph = ioGraph();
+        DagExecutorOptions.DagExecutorOptionsBuilder options = DagExecutorOptions.builder().mode(ExecuteMode.SHARED).inline(true);
+
+        double platform;
+        try (DagGraphExecutor executor = new DagGraphExecutor(graph, options.executorProvider(() -> Executors.newFixedThreadPool(24)).build())) {
+            platform = throughput(executor);
+        }
+        double virtual;
+        try (DagGraphExecutor executor = new DagGraphExecutor(graph, options.executorProvider(DagExecutors::newVirtualThreadExecutor).build())) {
+            virtual = throughput(executor);
+        }
+        System.out.printf("io graph throughput, platform pool(24): %.0f exec/s, virtual threads: %.0f exec/s (x%.1f)%n",
+                platform, virtual, virtual / platform);
+    }
+}
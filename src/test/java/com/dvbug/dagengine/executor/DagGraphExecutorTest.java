@@ -0,0 +1,1055 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.Bulkhead;
+import com.dvbug.dagengine.graph.DagAbortException;
+import com.dvbug.dagengine.graph.DagNodeCache;
+import com.dvbug.dagengine.graph.DagNodeOptions;
+import com.dvbug.dagengine.graph.FanOutPolicy;
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.dagengine.graph.InlinePolicy;
+import com.dvbug.dagengine.graph.LogicDagNode;
+import com.dvbug.dagengine.graph.MergeDagNode;
+import com.dvbug.dagengine.graph.StrategyGraph;
+import lombok.Getter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DagGraphExecutorTest {
+
+    @Getter
+    static class CountingDagNode extends LogicDagNode {
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile Thread lastThread;
+
+        CountingDagNode(String name) {
+            super(name);
+        }
+
+        @Override
+        protected GraphData doExecute(GraphData input) {
+            count.incrementAndGet();
+            lastThread = Thread.currentThread();
+            return input;
+        }
+    }
+
+    static class SleepDagNode extends LogicDagNode {
+        private final long millis;
+        private volatile boolean interrupted;
+
+        SleepDagNode(String name, long millis) {
+            super(name);
+            this.millis = millis;
+            setOptions(DagNodeOptions.builder().blocking(true).build());
+        }
+
+        @Override
+        protected GraphData doExecute(GraphData input) throws Throwable {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                throw e;
+            }
+            return input;
+        }
+    }
+
+    static class KeysMergeDagNode extends MergeDagNode {
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile Set<String> lastKeys;
+
+        KeysMergeDagNode(String name, int quorum) {
+            super(name, quorum);
+        }
+
+        @Override
+        protected GraphData doMerge(Map<String, GraphData> inputs) {
+            count.incrementAndGet();
+            lastKeys = inputs.keySet();
+            return inputs.values().iterator().next();
+        }
+    }
+
+    static class ValueGraphData implements GraphData {
+        @Override
+        public boolean isSucceed() {
+            return true;
+        }
+    }
+
+    // root -> a -> (b, c) -> d -> final
+    static StrategyGraph lattice(CountingDagNode... nodes) {
+        StrategyGraph graph = new StrategyGraph("lattice");
+        for (CountingDagNode node : nodes) {
+            graph.addNode(node);
+        }
+        graph.addEdgeFromRoot("a");
+        graph.addEdge("b", "a");
+        graph.addEdge("c", "a");
+        graph.addEdge("d", "b");
+        graph.addEdge("d", "c");
+        graph.addEdgeToFinal("d");
+        return graph;
+    }
+
+    // root -> n0 -> n1 -> ... -> final
+    static StrategyGraph chain(CountingDagNode[] nodes) {
+        StrategyGraph graph = new StrategyGraph("chain");
+        for (int i = 0; i < nodes.length; i++) {
+            graph.addNode(nodes[i] = new CountingDagNode("n" + i));
+            if (i == 0) {
+                graph.addEdgeFromRoot("n0");
+            } else {
+                graph.addEdge("n" + i, "n" + (i - 1));
+            }
+        }
+        graph.addEdgeToFinal("n" + (nodes.length - 1));
+        return graph;
+    }
+
+    @Test
+    public void sharedModeExecutesNodeOnce() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        StrategyGraph graph = lattice(a, b, c, d);
+
+        DagExecutorOptions.DagExecutorOptionsBuilder options = DagExecutorOptions.builder().shortCircuit(false);
+        ExecuteResult<GraphData> pathResult = new DagGraphExecutor(graph, options.build()).execute(new ValueGraphData(), 1000);
+        Assertions.assertTrue(pathResult.getData().isSucceed());
+        Assertions.assertEquals(2, d.getCount().get());
+
+        for (CountingDagNode node : new CountingDagNode[]{a, b, c, d}) {
+            node.getCount().set(0);
+        }
+        DagGraphExecutor executor = new DagGraphExecutor(graph, options.mode(ExecuteMode.SHARED).build());
+        ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 1000);
+        Assertions.assertTrue(result.getData().isSucceed());
+        for (CountingDagNode node : new CountingDagNode[]{a, b, c, d}) {
+            Assertions.assertEquals(1, node.getCount().get());
+        }
+        Assertions.assertEquals(5, result.getHistory().size());
+        Assertions.assertEquals("root", result.getHistory().get(0).getExecuteNode());
+        Assertions.assertEquals("final", result.getHistory().get(4).getExecuteNode());
+    }
+
+    @Test
+    public void sharedModeKeepsStatePerRequest() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        DagGraphExecutor executor = new DagGraphExecutor(lattice(a, b, c, d), DagExecutorOptions.builder()
+                .mode(ExecuteMode.SHARED).shortCircuit(false).build());
+        List<CompletableFuture<ExecuteResult<GraphData>>> results = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            results.add(executor.executeAsync(new ValueGraphData(), 5000).toCompletableFuture());
+        }
+        for (CompletableFuture<ExecuteResult<GraphData>> result : results) {
+            Assertions.assertTrue(result.get().getData().isSucceed());
+            Assertions.assertEquals(5, result.get().getHistory().size());
+        }
+        for (CountingDagNode node : new CountingDagNode[]{a, b, c, d}) {
+            Assertions.assertEquals(100, node.getCount().get());
+        }
+
+        // root -> (fast, slow) -> join -> tail -> final, join 以 fast 执行后 slow 不再被需要, 不等终止节点结束就被取消
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        SleepDagNode slow = new SleepDagNode("slow", 2000) {
+            @Override
+            protected GraphData doExecute(GraphData input) throws Throwable {
+                slowStarted.countDown();
+                return super.doExecute(input);
+            }
+        };
+        AtomicBoolean cancelledBeforeTail = new AtomicBoolean();
+        StrategyGraph graph = new StrategyGraph("unneeded");
+        graph.addNode(new LogicDagNode("fast") {
+            @Override
+            protected GraphData doExecute(GraphData input) throws Throwable {
+                slowStarted.await(1, TimeUnit.SECONDS);
+                return input;
+            }
+        });
+        graph.addNode(slow);
+        graph.addNode(new CountingDagNode("join"));
+        graph.addNode(new LogicDagNode("tail") {
+            @Override
+            protected GraphData doExecute(GraphData input) throws Throwable {
+                for (int i = 0; i < 100 && !slow.interrupted; i++) {
+                    Thread.sleep(10);
+                }
+                cancelledBeforeTail.set(slow.interrupted);
+                return input;
+            }
+        });
+        graph.addEdgeFromRoot("fast");
+        graph.addEdgeFromRoot("slow");
+        graph.addEdge("join", "fast");
+        graph.addEdge("join", "slow");
+        graph.addEdge("tail", "join");
+        graph.addEdgeToFinal("tail");
+        graph.setNodeOptions("tail", DagNodeOptions.builder().blocking(true).build());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        ExecuteResult<GraphData> result = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(ExecuteMode.SHARED).executor(pool).build())
+                .execute(new ValueGraphData(), 5000);
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertEquals("fast", result.getHistory().get(1).getExecuteNode());
+        Assertions.assertTrue(cancelledBeforeTail.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void countingModeExecutesNodeOnce() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        DagGraphExecutor executor = new DagGraphExecutor(lattice(a, b, c, d), DagExecutorOptions.builder()
+                .mode(ExecuteMode.COUNTING).shortCircuit(false).build());
+        for (int i = 1; i <= 3; i++) {
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            for (CountingDagNode node : new CountingDagNode[]{a, b, c, d}) {
+                Assertions.assertEquals(i, node.getCount().get());
+            }
+            Assertions.assertEquals(5, result.getHistory().size());
+            Assertions.assertEquals("b", result.getHistory().get(2).getExecuteNode());
+        }
+
+        // 不开启内联时, 长链路在执行首个节点的线程上循环继续执行, 不逐节点提交到线程池, 也不递归
+        // 每个任务使用新线程执行, 逐节点提交时各节点的执行线程不同
+        CountingDagNode[] nodes = new CountingDagNode[2000];
+        ExecuteResult<GraphData> result = new DagGraphExecutor(chain(nodes), DagExecutorOptions.builder().mode(ExecuteMode.COUNTING)
+                .executor(r -> new Thread(r).start()).build())
+                .execute(new ValueGraphData(), 5000, HistoryMode.NONE);
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertNotSame(Thread.currentThread(), nodes[0].getLastThread());
+        for (CountingDagNode node : nodes) {
+            Assertions.assertEquals(1, node.getCount().get());
+            Assertions.assertSame(nodes[0].getLastThread(), node.getLastThread());
+        }
+
+        // 开启内联时全部在调用线程上循环执行
+        result = new DagGraphExecutor(chain(nodes), DagExecutorOptions.builder().mode(ExecuteMode.COUNTING).inline(true)
+                .executor(r -> new Thread(r).start()).build())
+                .execute(new ValueGraphData(), 5000, HistoryMode.NONE);
+        Assertions.assertTrue(result.getData().isSucceed());
+        for (CountingDagNode node : nodes) {
+            Assertions.assertSame(Thread.currentThread(), node.getLastThread());
+        }
+    }
+
+    @Test
+    public void pathModeCompletesLongChain() throws Exception {
+        // 子路径共用一个结果Future, 不逐节点串联, 长链路不会因回调嵌套过深而挂起
+        CountingDagNode[] nodes = new CountingDagNode[2000];
+        ExecuteResult<GraphData> result = new DagGraphExecutor(chain(nodes), DagExecutorOptions.builder().mode(ExecuteMode.PATH).build())
+                .execute(new ValueGraphData(), 5000, HistoryMode.NONE);
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertEquals(1, nodes[nodes.length - 1].getCount().get());
+    }
+
+    @Test
+    public void inlineChainRunsInLoop() throws Exception {
+        // 连续的内联节点在调用线程上循环执行, 不逐节点递归
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            CountingDagNode[] nodes = new CountingDagNode[3000];
+            ExecuteResult<GraphData> result = new DagGraphExecutor(chain(nodes), DagExecutorOptions.builder().mode(mode).inline(true).build())
+                    .execute(new ValueGraphData(), 5000, HistoryMode.NONE);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals(1, nodes[nodes.length - 1].getCount().get(), mode.name());
+            Assertions.assertSame(Thread.currentThread(), nodes[nodes.length - 1].getLastThread(), mode.name());
+        }
+    }
+
+    @Test
+    public void inlineModeSkipsSchedulerForNonBlockingNodes() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        c.setOptions(DagNodeOptions.builder().blocking(true).build());
+        StrategyGraph graph = lattice(a, b, c, d);
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).inline(true).build());
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            Assertions.assertSame(Thread.currentThread(), a.getLastThread());
+            Assertions.assertSame(Thread.currentThread(), b.getLastThread());
+            Assertions.assertNotSame(Thread.currentThread(), c.getLastThread());
+        }
+    }
+
+    @Test
+    public void adaptiveInlineRunsCheapNodesOnCompletingThread() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        b.setOptions(DagNodeOptions.builder().inline(InlinePolicy.NEVER).build());
+        StrategyGraph graph = lattice(a, b, c, d);
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder()
+                    .mode(mode).shortCircuit(false).adaptiveInlineThreshold(TimeUnit.SECONDS.toMicros(1)).build());
+            // 没有耗时样本时提交到线程池
+            Assertions.assertTrue(executor.execute(new ValueGraphData(), 1000).getData().isSucceed());
+            Assertions.assertNotSame(Thread.currentThread(), a.getLastThread());
+
+            Assertions.assertTrue(executor.execute(new ValueGraphData(), 1000).getData().isSucceed());
+            Assertions.assertSame(Thread.currentThread(), a.getLastThread());
+            Assertions.assertNotSame(Thread.currentThread(), b.getLastThread());
+        }
+    }
+
+    @Test
+    public void neverInlineNodeRunsOnItsOwnTask() throws Exception {
+        // root -> a -> (other, never) -> final, 不内联的节点是最后添加的出边
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode other = new CountingDagNode("other");
+        CountingDagNode never = new CountingDagNode("never");
+        never.setOptions(DagNodeOptions.builder().inline(InlinePolicy.NEVER).build());
+        StrategyGraph graph = new StrategyGraph("never");
+        for (CountingDagNode node : new CountingDagNode[]{a, other, never}) {
+            graph.addNode(node);
+        }
+        graph.addEdgeFromRoot("a");
+        graph.addEdge("other", "a");
+        graph.addEdge("never", "a");
+        graph.addEdgeToFinal("other");
+        graph.addEdgeToFinal("never");
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).shortCircuit(false)
+                    .executor(r -> new Thread(r).start()).adaptiveInlineThreshold(TimeUnit.SECONDS.toMicros(1)).build());
+            for (int i = 0; i < 2; i++) {
+                Assertions.assertTrue(executor.execute(new ValueGraphData(), 1000).getData().isSucceed(), mode.name());
+                Assertions.assertNotSame(a.getLastThread(), never.getLastThread(), mode.name());
+            }
+        }
+    }
+
+    @Test
+    public void providedExecutorIsOwnedAndClosed() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        CountingDagNode d = new CountingDagNode("d");
+        StrategyGraph graph = lattice(a, b, c, d);
+
+        ExecutorService[] pool = new ExecutorService[1];
+        DagExecutorOptions options = DagExecutorOptions.builder()
+                .executorProvider(() -> pool[0] = Executors.newFixedThreadPool(2, r -> new Thread(r, "isolated")))
+                .build();
+        try (DagGraphExecutor executor = new DagGraphExecutor(graph, options)) {
+            Assertions.assertTrue(executor.execute(new ValueGraphData(), 1000).getData().isSucceed());
+            Assertions.assertEquals("isolated", d.getLastThread().getName());
+        }
+        Assertions.assertTrue(pool[0].isShutdown());
+    }
+
+    @Test
+    public void shortCircuitCancelsSiblingBranches() throws Exception {
+        // root -> (fast, slow) -> final
+        StrategyGraph graph = new StrategyGraph("race");
+        CountingDagNode fast = new CountingDagNode("fast");
+        SleepDagNode slow = new SleepDagNode("slow", 2000);
+        graph.addNode(fast);
+        graph.addNode(slow);
+        graph.addEdgeFromRoot("slow");
+        graph.addEdgeFromRoot("fast");
+        graph.addEdgeToFinal("slow");
+        graph.addEdgeToFinal("fast");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).executor(pool).build());
+            long start = System.nanoTime();
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 5000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            Assertions.assertEquals("fast", result.getHistory().get(1).getExecuteNode());
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000), mode.name());
+        }
+
+        DagGraphExecutor waitAll = new DagGraphExecutor(graph, DagExecutorOptions.builder().executor(pool).shortCircuit(false).build());
+        long start = System.nanoTime();
+        ExecuteResult<GraphData> result = waitAll.execute(new ValueGraphData(), 5000);
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(2000));
+        pool.shutdown();
+    }
+
+    @Test
+    public void timeoutCancelsInFlightWork() throws Exception {
+        // root -> slow -> after -> final
+        StrategyGraph graph = new StrategyGraph("deadline");
+        SleepDagNode slow = new SleepDagNode("slow", 1000);
+        CountingDagNode after = new CountingDagNode("after");
+        graph.addNode(slow);
+        graph.addNode(after);
+        graph.addEdgeFromRoot("slow");
+        graph.addEdge("after", "slow");
+        graph.addEdgeToFinal("after");
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            slow.interrupted = false;
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).build());
+            Assertions.assertThrows(TimeoutException.class, () -> executor.execute(new ValueGraphData(), 50));
+            for (int i = 0; i < 100 && !slow.interrupted; i++) {
+                Thread.sleep(10);
+            }
+            Assertions.assertTrue(slow.interrupted, mode.name());
+            Thread.sleep(50);
+            Assertions.assertEquals(0, after.getCount().get(), mode.name());
+        }
+    }
+
+    @Test
+    public void nodeTimeoutFailsOnlyItsBranch() throws Exception {
+        // root -> (hang, slow) -> final
+        StrategyGraph graph = new StrategyGraph("node-timeout");
+        SleepDagNode hang = new SleepDagNode("hang", 5000);
+        graph.addNode(hang);
+        graph.addNode(new SleepDagNode("slow", 100));
+        graph.addEdgeFromRoot("hang");
+        graph.addEdgeFromRoot("slow");
+        graph.addEdgeToFinal("hang");
+        graph.addEdgeToFinal("slow");
+        graph.setNodeOptions("hang", DagNodeOptions.builder().blocking(true).timeout(50).build());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            hang.interrupted = false;
+            DagExecutorOptions options = DagExecutorOptions.builder().mode(mode).executor(pool).shortCircuit(false).build();
+            long start = System.nanoTime();
+            ExecuteResult<GraphData> result = new DagGraphExecutor(graph, options).execute(new ValueGraphData(), 3000);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals("slow", result.getHistory().get(1).getExecuteNode());
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000), mode.name());
+            Assertions.assertTrue(hang.interrupted, mode.name());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void nodeTimeoutNeverRunsOnTimerThread() throws Exception {
+        StrategyGraph graph = new StrategyGraph("timer");
+        graph.addNode(new SleepDagNode("hang", 5000));
+        graph.addEdgeFromRoot("hang");
+        graph.addEdgeToFinal("hang");
+        graph.setNodeOptions("hang", DagNodeOptions.builder().blocking(true).timeout(20).build());
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            // 第一个节点任务在新线程上执行, 其余排队, 超时触发时排队已满
+            AtomicInteger submitted = new AtomicInteger();
+            List<Runnable> queue = Collections.synchronizedList(new ArrayList<>());
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).inline(true)
+                    .executor(r -> {
+                        if (submitted.getAndIncrement() == 0) new Thread(r).start();
+                        else queue.add(r);
+                    })
+                    .maxQueuedTasks(1).overloadPolicy(OverloadPolicy.CALLER_RUNS).build());
+            CompletableFuture<String> thread = executor.executeAsync(new ValueGraphData(), 3000).toCompletableFuture()
+                    .thenApply(result -> Thread.currentThread().getName());
+            executor.executeAsync(new ValueGraphData(), 3000);
+            while (!thread.isDone()) {
+                Thread.sleep(10);
+                List<Runnable> tasks;
+                synchronized (queue) {
+                    tasks = new ArrayList<>(queue);
+                    queue.clear();
+                }
+                tasks.forEach(Runnable::run);
+            }
+            // 超时后的下游回调不在计时线程上执行
+            Assertions.assertNotEquals("dag-engine-timer", thread.get(), mode.name());
+        }
+    }
+
+    @Test
+    public void sequentialFanOutTriesBranchesInPriorityOrder() throws Exception {
+        // root -> (fail, b, c) -> final
+        StrategyGraph graph = new StrategyGraph("sequential");
+        CountingDagNode fail = new CountingDagNode("fail") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                super.doExecute(input);
+                return GraphData.ofFailure(new IllegalStateException("fail"));
+            }
+        };
+        CountingDagNode b = new CountingDagNode("b");
+        CountingDagNode c = new CountingDagNode("c");
+        for (CountingDagNode node : new CountingDagNode[]{fail, b, c}) {
+            graph.addNode(node);
+            graph.addEdgeFromRoot(node);
+            graph.addEdgeToFinal(node);
+        }
+        graph.setFanOutPolicy("root", FanOutPolicy.SEQUENTIAL);
+
+        for (boolean shortCircuit : new boolean[]{true, false}) {
+            DagExecutorOptions options = DagExecutorOptions.builder().shortCircuit(shortCircuit).build();
+            ExecuteResult<GraphData> result = new DagGraphExecutor(graph, options).execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            Assertions.assertEquals("b", result.getHistory().get(1).getExecuteNode());
+        }
+        Assertions.assertEquals(2, fail.getCount().get());
+        Assertions.assertEquals(2, b.getCount().get());
+        Assertions.assertEquals(0, c.getCount().get());
+    }
+
+    @Test
+    public void hedgedNodeRetriesSlowInvocation() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean stallNext = new AtomicBoolean();
+        StrategyGraph graph = new StrategyGraph("hedge");
+        graph.addNode(new LogicDagNode("lookup") {
+            @Override
+            protected GraphData doExecute(GraphData input) throws Throwable {
+                calls.incrementAndGet();
+                Thread.sleep(stallNext.getAndSet(false) ? 3000 : 2);
+                return input;
+            }
+        });
+        graph.addEdgeFromRoot("lookup");
+        graph.addEdgeToFinal("lookup");
+        graph.setNodeOptions("lookup", DagNodeOptions.builder().blocking(true).hedged(true).build());
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().executor(pool).build());
+        for (int i = 0; i < NodeStatistics.LatencyHistogram.MIN_SAMPLES; i++) {
+            Assertions.assertTrue(executor.execute(new ValueGraphData(), 1000).getData().isSucceed());
+        }
+
+        calls.set(0);
+        stallNext.set(true);
+        long start = System.nanoTime();
+        Assertions.assertTrue(executor.execute(new ValueGraphData(), 5000).getData().isSucceed());
+        Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000));
+        Assertions.assertEquals(2, calls.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void prioritizedRunsCriticalPathFirst() throws Exception {
+        // root -> (a, b -> c) -> final, 单线程池上 a 和 b 同时就绪
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        StrategyGraph graph = new StrategyGraph("critical");
+        for (String name : new String[]{"a", "b", "c"}) {
+            graph.addNode(new CountingDagNode(name) {
+                @Override
+                protected GraphData doExecute(GraphData input) {
+                    order.add(getName());
+                    return super.doExecute(input);
+                }
+            });
+        }
+        graph.addEdgeFromRoot("a");
+        graph.addEdgeFromRoot("b");
+        graph.addEdge("c", "b");
+        graph.addEdgeToFinal("a");
+        graph.addEdgeToFinal("c");
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        DagExecutorOptions.DagExecutorOptionsBuilder options = DagExecutorOptions.builder().executor(pool).shortCircuit(false);
+        Assertions.assertTrue(new DagGraphExecutor(graph, options.build()).execute(new ValueGraphData(), 1000).getData().isSucceed());
+        Assertions.assertEquals("a", order.get(0));
+
+        order.clear();
+        Assertions.assertTrue(new DagGraphExecutor(graph, options.prioritized(true).build()).execute(new ValueGraphData(), 1000).getData().isSucceed());
+        Assertions.assertEquals("b", order.get(0));
+        pool.shutdown();
+    }
+
+    @Test
+    public void admissionControl() throws Exception {
+        StrategyGraph graph = new StrategyGraph("admission");
+        graph.addNode(new SleepDagNode("slow", 300));
+        graph.addEdgeFromRoot("slow");
+        graph.addEdgeToFinal("slow");
+
+        DagGraphExecutor rejecting = new DagGraphExecutor(graph, DagExecutorOptions.builder().maxConcurrentExecutions(1).build());
+        CompletableFuture<ExecuteResult<GraphData>> running = rejecting.executeAsync(new ValueGraphData(), 1000).toCompletableFuture();
+        Assertions.assertThrows(RejectedExecutionException.class, () -> rejecting.execute(new ValueGraphData(), 1000));
+        Assertions.assertTrue(running.get().getData().isSucceed());
+        Assertions.assertEquals(1, rejecting.getMetrics().getRejectedExecutions());
+        Assertions.assertEquals(0, rejecting.getMetrics().getRunningExecutions());
+
+        DagGraphExecutor waiting = new DagGraphExecutor(graph, DagExecutorOptions.builder()
+                .maxConcurrentExecutions(1).admissionPolicy(AdmissionPolicy.WAIT).build());
+        running = waiting.executeAsync(new ValueGraphData(), 1000).toCompletableFuture();
+        // 异步执行不等待执行名额
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                () -> waiting.executeAsync(new ValueGraphData(), 1000).toCompletableFuture().get());
+        Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        Assertions.assertTrue(waiting.execute(new ValueGraphData(), 1000).getData().isSucceed());
+        Assertions.assertTrue(running.get().getData().isSucceed());
+        Assertions.assertEquals(1, waiting.getMetrics().getRejectedExecutions());
+    }
+
+    @Test
+    public void queuedTasksOverflowRunOnCaller() throws Exception {
+        // root -> (a, b) -> final
+        StrategyGraph graph = new StrategyGraph("queue");
+        CountingDagNode a = new CountingDagNode("a");
+        CountingDagNode b = new CountingDagNode("b");
+        for (CountingDagNode node : new CountingDagNode[]{a, b}) {
+            node.setOptions(DagNodeOptions.builder().blocking(true).build());
+            graph.addNode(node);
+            graph.addEdgeFromRoot(node);
+            graph.addEdgeToFinal(node);
+        }
+
+        List<Runnable> queue = new ArrayList<>();
+        DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().inline(true)
+                .executor(queue::add).maxQueuedTasks(1).overloadPolicy(OverloadPolicy.CALLER_RUNS).build());
+        CompletableFuture<ExecuteResult<GraphData>> result = executor.executeAsync(new ValueGraphData(), 1000).toCompletableFuture();
+        Assertions.assertTrue(result.isDone());
+        Assertions.assertEquals("b", result.get().getHistory().get(1).getExecuteNode());
+        Assertions.assertEquals(1, executor.getMetrics().getQueuedTasks());
+        Assertions.assertEquals(1, executor.getMetrics().getCallerRunsTasks());
+
+        queue.forEach(Runnable::run);
+        Assertions.assertEquals(0, executor.getMetrics().getQueuedTasks());
+        Assertions.assertEquals(0, a.getCount().get());
+    }
+
+    @Test
+    public void bulkheadRejectsOverLimit() throws Exception {
+        // root -> (a, b) -> final, a 和 b 共享同一个舱壁
+        ExecutorService isolated = Executors.newFixedThreadPool(2, r -> new Thread(r, "bulkhead"));
+        Bulkhead bulkhead = Bulkhead.of("remote", 1, isolated);
+        StrategyGraph graph = new StrategyGraph("bulkhead");
+        CountingDagNode[] nodes = new CountingDagNode[2];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new CountingDagNode(String.valueOf((char) ('a' + i))) {
+                @Override
+                protected GraphData doExecute(GraphData input) {
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException ignored) {
+                    }
+                    return super.doExecute(input);
+                }
+            };
+        }
+        CountingDagNode a = nodes[0];
+        CountingDagNode b = nodes[1];
+        for (CountingDagNode node : nodes) {
+            node.setOptions(DagNodeOptions.builder().bulkhead(bulkhead).build());
+            graph.addNode(node);
+            graph.addEdgeFromRoot(node);
+            graph.addEdgeToFinal(node);
+        }
+
+        DagExecutorOptions options = DagExecutorOptions.builder().inline(true).shortCircuit(false).build();
+        ExecuteResult<GraphData> result = new DagGraphExecutor(graph, options).execute(new ValueGraphData(), 1000);
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertEquals(1, a.getCount().get() + b.getCount().get());
+        Assertions.assertEquals(1, bulkhead.getRejectedCount());
+        Assertions.assertEquals(0, bulkhead.getActive());
+        Assertions.assertEquals("bulkhead", (a.getCount().get() == 1 ? a : b).getLastThread().getName());
+
+        // root -> remote -> after -> final, 下游节点不占用舱壁的独立线程池
+        StrategyGraph chain = new StrategyGraph("bulkhead-chain");
+        CountingDagNode remote = new CountingDagNode("remote");
+        CountingDagNode after = new CountingDagNode("after");
+        remote.setOptions(DagNodeOptions.builder().bulkhead(Bulkhead.of("remote", 1, isolated)).build());
+        chain.addNode(remote);
+        chain.addNode(after);
+        chain.addEdgeFromRoot("remote");
+        chain.addEdge("after", "remote");
+        chain.addEdgeToFinal("after");
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            result = new DagGraphExecutor(chain, DagExecutorOptions.builder().mode(mode).build()).execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals("bulkhead", remote.getLastThread().getName(), mode.name());
+            Assertions.assertNotEquals("bulkhead", after.getLastThread().getName(), mode.name());
+        }
+        isolated.shutdown();
+    }
+
+    @Test
+    public void memoizedNodeSkipsRepeatedInputs() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        CountingDagNode pure = new CountingDagNode("pure") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                super.doExecute(input);
+                return failing.get() ? GraphData.ofFailure(new IllegalStateException("unavailable")) : input;
+            }
+        };
+        DagNodeCache cache = DagNodeCache.builder().keyExtractor(input -> input).maximumWeight(100).build();
+        pure.setOptions(DagNodeOptions.builder().cache(cache).build());
+        StrategyGraph graph = new StrategyGraph("memo");
+        graph.addNode(pure);
+        graph.addEdgeFromRoot("pure");
+        graph.addEdgeToFinal("pure");
+
+        DagGraphExecutor executor = new DagGraphExecutor(graph);
+        GraphData input = new ValueGraphData();
+        Assertions.assertFalse(executor.execute(input, 1000).getData().isSucceed());
+        failing.set(false);
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(executor.execute(input, 1000).getData().isSucceed());
+        }
+        Assertions.assertEquals(2, pure.getCount().get());
+        Assertions.assertEquals(2, cache.getHitCount());
+        Assertions.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void memoizedNodeBypassesFullBulkhead() throws Exception {
+        CountingDagNode pure = new CountingDagNode("pure");
+        DagNodeCache cache = DagNodeCache.builder().keyExtractor(input -> input).maximumWeight(100).build();
+        Bulkhead bulkhead = Bulkhead.of("memo", 1);
+        pure.setOptions(DagNodeOptions.builder().cache(cache).bulkhead(bulkhead).build());
+        StrategyGraph graph = new StrategyGraph("memo");
+        graph.addNode(pure);
+        graph.addEdgeFromRoot("pure");
+        graph.addEdgeToFinal("pure");
+        GraphData input = new ValueGraphData();
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).build());
+            Assertions.assertTrue(executor.execute(input, 1000).getData().isSucceed());
+            // 舱壁已满时缓存命中的节点仍然直接返回结果, 不占用名额也不被拒绝
+            Assertions.assertTrue(bulkhead.tryAcquire());
+            try {
+                Assertions.assertTrue(executor.execute(input, 1000).getData().isSucceed(), mode.name());
+            } finally {
+                bulkhead.release();
+            }
+        }
+        Assertions.assertEquals(1, pure.getCount().get());
+        Assertions.assertEquals(0, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void resultCacheSkipsWholeGraph() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        StrategyGraph graph = lattice(a, new CountingDagNode("b"), new CountingDagNode("c"), new CountingDagNode("d"));
+        DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().resultCacheKey(input -> input).build());
+
+        GraphData input = new ValueGraphData();
+        ExecuteResult<GraphData> first = executor.execute(input, 1000);
+        Assertions.assertSame(first, executor.execute(input, 1000));
+        Assertions.assertSame(first, executor.executeAsync(input, 1000).toCompletableFuture().get());
+        Assertions.assertEquals(1, a.getCount().get());
+        Assertions.assertEquals(2, executor.getMetrics().getResultCacheHits());
+
+        executor.invalidateResultCache();
+        Assertions.assertNotSame(first, executor.execute(input, 1000));
+        Assertions.assertEquals(2, a.getCount().get());
+    }
+
+    @Test
+    public void coalescesConcurrentIdenticalExecutions() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        StrategyGraph graph = new StrategyGraph("coalesce");
+        graph.addNode(new LogicDagNode("expensive") {
+            @Override
+            protected GraphData doExecute(GraphData input) throws Throwable {
+                calls.incrementAndGet();
+                Thread.sleep(200);
+                return input;
+            }
+        });
+        graph.addEdgeFromRoot("expensive");
+        graph.addEdgeToFinal("expensive");
+        GraphData input = new ValueGraphData();
+
+        DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().coalesceKey(in -> in).build());
+        List<CompletableFuture<ExecuteResult<GraphData>>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(executor.executeAsync(input, 1000).toCompletableFuture());
+        }
+        for (CompletableFuture<ExecuteResult<GraphData>> result : results) {
+            Assertions.assertTrue(result.get().getData().isSucceed());
+        }
+        Assertions.assertEquals(1, calls.get());
+        Assertions.assertEquals(3, executor.getMetrics().getCoalescedExecutions());
+
+        calls.set(0);
+        graph.setNodeOptions("expensive", DagNodeOptions.builder().coalesceKey(in -> in).build());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        DagGraphExecutor nodeCoalescing = new DagGraphExecutor(graph, DagExecutorOptions.builder().executor(pool).build());
+        results.clear();
+        for (int i = 0; i < 4; i++) {
+            results.add(nodeCoalescing.executeAsync(input, 1000).toCompletableFuture());
+        }
+        for (CompletableFuture<ExecuteResult<GraphData>> result : results) {
+            Assertions.assertTrue(result.get().getData().isSucceed());
+        }
+        Assertions.assertEquals(1, calls.get());
+        pool.shutdown();
+    }
+
+    @Test
+    public void deadlineVisibleToNodes() throws Exception {
+        long[] remaining = new long[1];
+        StrategyGraph graph = new StrategyGraph("visible");
+        graph.addNode(new LogicDagNode("probe") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                remaining[0] = DagDeadline.remaining(TimeUnit.MILLISECONDS);
+                return input;
+            }
+        });
+        graph.addEdgeFromRoot("probe");
+        graph.addEdgeToFinal("probe");
+
+        Assertions.assertTrue(new DagGraphExecutor(graph).execute(new ValueGraphData(), 1000).getData().isSucceed());
+        Assertions.assertTrue(remaining[0] > 0 && remaining[0] <= 1000);
+        Assertions.assertFalse(DagDeadline.isPresent());
+    }
+
+    @Test
+    public void executeAsync() throws Exception {
+        StrategyGraph graph = lattice(new CountingDagNode("a"), new CountingDagNode("b"), new CountingDagNode("c"), new CountingDagNode("d"));
+        DagGraphExecutor executor = new DagGraphExecutor(graph);
+        ExecuteResult<GraphData> result = executor.executeAsync(new ValueGraphData(), 1000).toCompletableFuture().get();
+        Assertions.assertTrue(result.getData().isSucceed());
+        Assertions.assertEquals(5, result.getHistory().size());
+
+        StrategyGraph slowGraph = new StrategyGraph("slow");
+        slowGraph.addNode(new SleepDagNode("slow", 500));
+        slowGraph.addEdgeFromRoot("slow");
+        slowGraph.addEdgeToFinal("slow");
+        CompletableFuture<ExecuteResult<GraphData>> timeout = new DagGraphExecutor(slowGraph)
+                .executeAsync(new ValueGraphData(), 20).toCompletableFuture();
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, timeout::get);
+        Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    public void failedInputPassesThroughToTerminal() throws Exception {
+        CountingDagNode a = new CountingDagNode("a");
+        StrategyGraph chain = new StrategyGraph("chain");
+        chain.addNode(a);
+        chain.addEdgeFromRoot("a");
+        chain.addEdgeToFinal("a");
+        StrategyGraph lattice = lattice(new CountingDagNode("a"), new CountingDagNode("b"), new CountingDagNode("c"), new CountingDagNode("d"));
+
+        GraphData input = GraphData.ofFailure(new IllegalStateException("bad input"));
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagExecutorOptions options = DagExecutorOptions.builder().mode(mode).build();
+            ExecuteResult<GraphData> result = new DagGraphExecutor(chain, options).execute(input, 1000);
+            Assertions.assertSame(input, result.getData());
+            Assertions.assertEquals("input", result.getHistory().get(0).getExecuteNode());
+            Assertions.assertEquals(0, a.getCount().get());
+
+            // 遇到分叉则没有结果
+            result = new DagGraphExecutor(lattice, options).execute(input, 1000);
+            Assertions.assertNotSame(input, result.getData());
+            Assertions.assertFalse(result.getData().isSucceed());
+        }
+    }
+
+    @Test
+    public void historyModes() throws Exception {
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            StrategyGraph graph = lattice(new CountingDagNode("a"), new CountingDagNode("b"), new CountingDagNode("c"), new CountingDagNode("d"));
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder()
+                    .mode(mode).historyMode(HistoryMode.NONE).build());
+
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            Assertions.assertTrue(result.getHistory().isEmpty());
+            Assertions.assertEquals(5, executor.execute(new ValueGraphData(), 1000, HistoryMode.FULL).getHistory().size());
+        }
+
+        StrategyGraph graph = lattice(new CountingDagNode("a"), new CountingDagNode("b"), new CountingDagNode("c"), new CountingDagNode("d"));
+        DagGraphExecutor never = new DagGraphExecutor(graph, DagExecutorOptions.builder()
+                .historyMode(HistoryMode.SAMPLED).historySampleRate(0).build());
+        Assertions.assertTrue(never.execute(new ValueGraphData(), 1000).getHistory().isEmpty());
+        DagGraphExecutor always = new DagGraphExecutor(graph, DagExecutorOptions.builder()
+                .historyMode(HistoryMode.SAMPLED).historySampleRate(1).build());
+        Assertions.assertEquals(5, always.execute(new ValueGraphData(), 1000).getHistory().size());
+    }
+
+    @Test
+    public void mergeNodeReceivesAllParentOutputs() throws Exception {
+        // root -> (a, b, slow) -> merge -> final
+        StrategyGraph graph = new StrategyGraph("merge");
+        graph.addNode(new CountingDagNode("a"));
+        graph.addNode(new CountingDagNode("b"));
+        graph.addNode(new SleepDagNode("slow", 500));
+        KeysMergeDagNode all = new KeysMergeDagNode("merge", 0);
+        graph.addNode(all);
+        for (String parent : new String[]{"a", "b", "slow"}) {
+            graph.addEdgeFromRoot(parent);
+            graph.addEdge("merge", parent);
+        }
+        graph.addEdgeToFinal("merge");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (ExecuteMode mode : new ExecuteMode[]{ExecuteMode.SHARED, ExecuteMode.COUNTING}) {
+            all.count.set(0);
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).executor(pool).build());
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 2000);
+            Assertions.assertTrue(result.getData().isSucceed());
+            Assertions.assertEquals(1, all.count.get(), mode.name());
+            Assertions.assertEquals(Arrays.asList("a", "b", "slow"), new ArrayList<>(all.lastKeys), mode.name());
+        }
+
+        StrategyGraph quorumGraph = new StrategyGraph("quorum");
+        quorumGraph.addNode(new CountingDagNode("a"));
+        quorumGraph.addNode(new CountingDagNode("b"));
+        quorumGraph.addNode(new SleepDagNode("slow", 500));
+        KeysMergeDagNode quorum = new KeysMergeDagNode("merge", 2);
+        quorumGraph.addNode(quorum);
+        for (String parent : new String[]{"slow", "a", "b"}) {
+            quorumGraph.addEdgeFromRoot(parent);
+            quorumGraph.addEdge("merge", parent);
+        }
+        quorumGraph.addEdgeToFinal("merge");
+        for (ExecuteMode mode : new ExecuteMode[]{ExecuteMode.SHARED, ExecuteMode.COUNTING}) {
+            DagGraphExecutor executor = new DagGraphExecutor(quorumGraph, DagExecutorOptions.builder().mode(mode).executor(pool).build());
+            long start = System.nanoTime();
+            Assertions.assertTrue(executor.execute(new ValueGraphData(), 2000).getData().isSucceed());
+            Assertions.assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400), mode.name());
+            Assertions.assertFalse(quorum.lastKeys.contains("slow"), mode.name());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void edgePredicatePrunesBranchesBeforeScheduling() throws Exception {
+        // root -> (off, on, broken) -> final, off 和 broken 的入边不满足条件
+        CountingDagNode off = new CountingDagNode("off");
+        CountingDagNode on = new CountingDagNode("on");
+        CountingDagNode broken = new CountingDagNode("broken");
+        StrategyGraph graph = new StrategyGraph("switch");
+        graph.addNode(off);
+        graph.addNode(on);
+        graph.addNode(broken);
+        graph.addEdgeFromRoot("off", data -> false);
+        graph.addEdgeFromRoot("on", data -> data instanceof ValueGraphData);
+        graph.addEdgeFromRoot("broken", data -> {
+            throw new IllegalStateException("broken predicate");
+        });
+        graph.addEdgeToFinal("off");
+        graph.addEdgeToFinal("on");
+        graph.addEdgeToFinal("broken");
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            DagGraphExecutor executor = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).shortCircuit(false).build());
+            ExecuteResult<GraphData> result = executor.execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals("on", result.getHistory().get(1).getExecuteNode(), mode.name());
+        }
+        Assertions.assertEquals(0, off.getCount().get());
+        Assertions.assertEquals(0, broken.getCount().get());
+        Assertions.assertEquals(ExecuteMode.values().length, on.getCount().get());
+
+        // root -> (a, b) -> join -> final, 每次执行每条边的条件只求值一次
+        AtomicInteger evaluations = new AtomicInteger();
+        StrategyGraph joined = new StrategyGraph("join");
+        joined.addNode(new CountingDagNode("a"));
+        joined.addNode(new CountingDagNode("b"));
+        joined.addNode(new CountingDagNode("join"));
+        joined.addEdgeFromRoot("a");
+        joined.addEdgeFromRoot("b");
+        joined.addEdge("join", "a", data -> evaluations.incrementAndGet() > 0);
+        joined.addEdge("join", "b");
+        joined.addEdgeToFinal("join");
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            evaluations.set(0);
+            ExecuteResult<GraphData> result = new DagGraphExecutor(joined, DagExecutorOptions.builder().mode(mode).shortCircuit(false).build())
+                    .execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals(1, evaluations.get(), mode.name());
+        }
+
+        // 全部出边都不满足条件时没有结果
+        StrategyGraph closed = new StrategyGraph("closed");
+        closed.addNode(new CountingDagNode("off"));
+        closed.addEdgeFromRoot("off", data -> false);
+        closed.addEdgeToFinal("off");
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            ExecuteResult<GraphData> result = new DagGraphExecutor(closed, DagExecutorOptions.builder().mode(mode).build())
+                    .execute(new ValueGraphData(), 1000);
+            Assertions.assertFalse(result.getData().isSucceed(), mode.name());
+        }
+    }
+
+    @Test
+    public void abortedResultPrunesBranchWithoutException() throws Exception {
+        // root -> (returned -> after, thrown -> after, on) -> final
+        CountingDagNode after = new CountingDagNode("after");
+        StrategyGraph graph = new StrategyGraph("abort");
+        graph.addNode(new LogicDagNode("returned") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                return aborted();
+            }
+        });
+        graph.addNode(new LogicDagNode("thrown") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                abort();
+                return input;
+            }
+        });
+        graph.addNode(after);
+        graph.addNode(new CountingDagNode("on"));
+        graph.addEdgeFromRoot("returned");
+        graph.addEdgeFromRoot("thrown");
+        graph.addEdgeFromRoot("on");
+        graph.addEdge("after", "returned");
+        graph.addEdge("after", "thrown");
+        graph.addEdgeToFinal("after");
+        graph.addEdgeToFinal("on");
+
+        for (ExecuteMode mode : ExecuteMode.values()) {
+            ExecuteResult<GraphData> result = new DagGraphExecutor(graph, DagExecutorOptions.builder().mode(mode).shortCircuit(false).build())
+                    .execute(new ValueGraphData(), 1000);
+            Assertions.assertTrue(result.getData().isSucceed(), mode.name());
+            Assertions.assertEquals("on", result.getHistory().get(1).getExecuteNode(), mode.name());
+        }
+        Assertions.assertEquals(0, after.getCount().get());
+
+        Assertions.assertTrue(GraphData.isAborted(GraphData.ABORTED));
+        Assertions.assertTrue(GraphData.isAborted(GraphData.ofFailure(new DagAbortException())));
+        Assertions.assertFalse(GraphData.isAborted(GraphData.ofFailure(new IllegalStateException())));
+        Assertions.assertEquals(0, DagAbortException.SIGNAL.getStackTrace().length);
+
+        // 覆盖 abortError 的节点仍然抛出自己的中止异常
+        DagAbortException custom = new DagAbortException("custom");
+        GraphData aborted = new LogicDagNode("custom") {
+            @Override
+            protected GraphData doExecute(GraphData input) {
+                abort();
+                return input;
+            }
+
+            @Override
+            protected DagAbortException abortError() {
+                return custom;
+            }
+        }.execute(new ValueGraphData());
+        Assertions.assertSame(custom, ((GraphData.GraphDataFailureHolder) aborted).getThrowable());
+    }
+}
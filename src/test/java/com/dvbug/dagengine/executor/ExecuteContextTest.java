@@ -0,0 +1,24 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.GraphData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExecuteContextTest {
+
+    @Test
+    public void historyIsSharedNotCopied() {
+        GraphData data = GraphData.ofFailure(new IllegalStateException());
+        ExecuteContext root = new ExecuteContext(data, "root")
+                .pushHistory(new ExecuteContext.ExecuteHistoryItem(data, "root"));
+        ExecuteContext left = new ExecuteContext().clone(root).pushHistory(new ExecuteContext.ExecuteHistoryItem(data, "left"));
+        ExecuteContext right = new ExecuteContext().clone(root).pushHistory(new ExecuteContext.ExecuteHistoryItem(data, "right"));
+
+        Assertions.assertEquals(1, root.getHistory().length);
+        Assertions.assertEquals(2, left.getHistorySize());
+        Assertions.assertEquals("root", left.getHistory()[0].getExecuteNode());
+        Assertions.assertEquals("left", left.getHistory()[1].getExecuteNode());
+        Assertions.assertEquals("right", right.peekHistory().getExecuteNode());
+        Assertions.assertSame(left.getHistory()[0], right.getHistory()[0]);
+    }
+}
@@ -0,0 +1,114 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.DagNode;
+import com.dvbug.dagengine.graph.GraphData;
+import com.dvbug.dagengine.graph.LogicDagNode;
+import com.dvbug.dagengine.graph.StrategyGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class ExecutionPlanTest {
+
+    static class PassDagNode extends LogicDagNode {
+        PassDagNode(String name) {
+            super(name);
+        }
+
+        @Override
+        protected GraphData doExecute(GraphData input) {
+            return input;
+        }
+    }
+
+    static StrategyGraph diamond() {
+        StrategyGraph graph = new StrategyGraph("diamond");
+        graph.addNode(new PassDagNode("a"));
+        graph.addNode(new PassDagNode("b"));
+        graph.addNode(new PassDagNode("c"));
+        graph.addEdgeFromRoot("a");
+        graph.addEdge("b", "a");
+        graph.addEdge("c", "a");
+        graph.addEdgeToFinal("b");
+        graph.addEdgeToFinal("c");
+        return graph;
+    }
+
+    @Test
+    public void compile() {
+        StrategyGraph graph = diamond();
+        ExecutionPlan plan = ExecutionPlan.compile(graph);
+
+        Assertions.assertEquals(5, plan.size());
+        Assertions.assertSame(graph.getRootNode(), plan.node(plan.root()));
+
+        int a = plan.idOf(findNode(plan, "a"));
+        int end = plan.idOf(graph.getFinalNode());
+        Assertions.assertFalse(plan.isJoin(a));
+        Assertions.assertTrue(plan.isJoin(end));
+        Assertions.assertTrue(plan.isTerminal(end));
+        Assertions.assertEquals(2, plan.predecessors(end).length);
+        for (int node = 0; node < plan.size(); node++) {
+            for (int child : plan.successors(node)) {
+                final int parent = node;
+                Assertions.assertTrue(Arrays.stream(plan.predecessors(child)).anyMatch(p -> p == parent));
+            }
+            // 出边编号与下游的入边编号一致
+            for (int j = 0; j < plan.successors(node).length; j++) {
+                int child = plan.successors(node)[j];
+                int k = plan.successorEdge(node, j) - plan.predecessorEdge(child, 0);
+                Assertions.assertEquals(node, plan.predecessors(child)[k]);
+            }
+        }
+        Assertions.assertEquals(5, plan.edgeCount());
+
+        int[] position = new int[plan.size()];
+        int[] order = plan.topologicalOrder();
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        for (int node = 0; node < plan.size(); node++) {
+            for (int child : plan.successors(node)) {
+                Assertions.assertTrue(position[node] < position[child]);
+            }
+        }
+    }
+
+    @Test
+    public void cancellable() {
+        // 汇聚到多入边节点的上游都可能先于执行结束不再被需要, 终止节点不会
+        StrategyGraph graph = diamond();
+        ExecutionPlan plan = ExecutionPlan.compile(graph);
+        Assertions.assertTrue(plan.isCancellable(plan.root()));
+        Assertions.assertTrue(plan.isCancellable(plan.idOf(findNode(plan, "a"))));
+        Assertions.assertTrue(plan.isCancellable(plan.idOf(findNode(plan, "b"))));
+        Assertions.assertFalse(plan.isCancellable(plan.idOf(graph.getFinalNode())));
+
+        // 单链路上的节点只在唯一的下游决定后才结束
+        StrategyGraph chain = new StrategyGraph("chain");
+        chain.addNode(new PassDagNode("a"));
+        chain.addNode(new PassDagNode("b"));
+        chain.addEdgeFromRoot("a");
+        chain.addEdge("b", "a");
+        chain.addEdgeToFinal("b");
+        plan = ExecutionPlan.compile(chain);
+        for (int node = 0; node < plan.size(); node++) {
+            Assertions.assertFalse(plan.isCancellable(node));
+        }
+    }
+
+    @Test
+    public void rejectCycle() {
+        StrategyGraph graph = diamond();
+        graph.addEdge("a", "b");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ExecutionPlan.compile(graph));
+    }
+
+    private static DagNode findNode(ExecutionPlan plan, String name) {
+        for (int i = 0; i < plan.size(); i++) {
+            if (plan.node(i).getName().equals(name)) return plan.node(i);
+        }
+        throw new IllegalArgumentException(name);
+    }
+}
@@ -0,0 +1,61 @@
+package com.dvbug.dagengine.executor;
+
+import com.dvbug.dagengine.graph.StrategyGraph;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class NodeStatisticsTest {
+
+    @Test
+    public void quantile() {
+        NodeStatistics.LatencyHistogram histogram = new NodeStatistics.LatencyHistogram();
+        histogram.record(1_000_000);
+        Assertions.assertEquals(-1, histogram.quantile(0.95));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1_000_000L);
+        }
+        long p95 = histogram.quantile(0.95);
+        Assertions.assertTrue(p95 >= 95_000_000L && p95 <= 95_000_000L * 5 / 4, String.valueOf(p95));
+        long p50 = histogram.quantile(0.5);
+        Assertions.assertTrue(p50 >= 50_000_000L && p50 <= 50_000_000L * 5 / 4, String.valueOf(p50));
+    }
+
+    @Test
+    public void bucketBounds() {
+        for (long nanos : new long[]{0, 1, 3, 4, 7, 8, 1000, 123_456_789L, Long.MAX_VALUE >> 2}) {
+            int index = NodeStatistics.LatencyHistogram.indexOf(nanos);
+            Assertions.assertTrue(nanos < NodeStatistics.LatencyHistogram.upperBoundOf(index), String.valueOf(nanos));
+        }
+    }
+
+    @Test
+    public void criticalPath() {
+        // root -> (a, b -> c) -> final
+        StrategyGraph graph = new StrategyGraph("critical");
+        DagGraphExecutorTest.CountingDagNode nodeA = new DagGraphExecutorTest.CountingDagNode("a");
+        DagGraphExecutorTest.CountingDagNode nodeB = new DagGraphExecutorTest.CountingDagNode("b");
+        graph.addNode(nodeA);
+        graph.addNode(nodeB);
+        graph.addNode(new DagGraphExecutorTest.CountingDagNode("c"));
+        graph.addEdgeFromRoot("a");
+        graph.addEdgeFromRoot("b");
+        graph.addEdge("c", "b");
+        graph.addEdgeToFinal("a");
+        graph.addEdgeToFinal("c");
+        ExecutionPlan plan = ExecutionPlan.compile(graph);
+        int a = plan.idOf(nodeA);
+        int b = plan.idOf(nodeB);
+
+        NodeStatistics statistics = new NodeStatistics(plan, true);
+        // 没有样本时按跳数估算
+        Assertions.assertTrue(statistics.criticalPath(b) > statistics.criticalPath(a));
+        Assertions.assertEquals(-1, statistics.mean(a));
+
+        for (int i = 0; i < NodeStatistics.CRITICAL_PATH_INTERVAL; i++) {
+            statistics.record(a, 10_000_000L);
+        }
+        Assertions.assertEquals(10_000_000L, statistics.mean(a));
+        Assertions.assertTrue(statistics.criticalPath(a) > statistics.criticalPath(b));
+    }
+}